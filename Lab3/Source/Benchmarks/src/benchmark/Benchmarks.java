@@ -0,0 +1,309 @@
+package benchmark;
+
+import distancevector.DistanceVectorBenchmarks;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import receiver.ReceiverBenchmarks;
+import sender.SenderBenchmarks;
+
+/**
+ * Microbenchmarks for the per-packet hot paths. Each benchmark is warmed up,
+ * then timed over several iterations, and reported as the average time per
+ * operation with a 99.9% confidence interval. Results are written as JSON
+ * in the same layout JMH uses, so the usual JMH tooling can read them.
+ *
+ * Settings are system properties:
+ *
+ * <pre>
+ * bench.warmup      warmup iterations (5)
+ * bench.iterations  measured iterations (5)
+ * bench.time        milliseconds per iteration (1000)
+ * bench.output      JSON file to write (benchmark-results.json)
+ * bench.baseline    JSON file from an earlier run to compare against
+ * bench.threshold   slowdown over the baseline that counts as a
+ *                   regression, in percent (10)
+ * </pre>
+ *
+ * With a baseline, the run exits with status 1 if any benchmark regressed.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Benchmarks {
+
+    // Student's t for a two sided 99.9% interval, by degrees of freedom
+    static final double[] T_999 = {636.62, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+
+    // Shortest a single call to a benchmark's loop should take
+    static final long MIN_BATCH_NANOS = 100000L;
+
+    static final PrintStream console = System.out;
+    static long sink;
+
+    /**
+     * @param args the command line arguments. An optional regular expression
+     * picks the benchmarks to run by name.
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+        int warmup = Integer.getInteger("bench.warmup", 5), iterations = Integer.getInteger("bench.iterations", 5);
+        long time = Long.getLong("bench.time", 1000L) * 1000000L;
+
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+        benchmarks.addAll(SenderBenchmarks.benchmarks());
+        benchmarks.addAll(ReceiverBenchmarks.benchmarks());
+        benchmarks.addAll(CodecBenchmarks.benchmarks());
+        benchmarks.addAll(DistanceVectorBenchmarks.benchmarks());
+
+        // The code under test logs every packet; that is part of its cost,
+        // but the output itself is thrown away
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        StringBuilder json = new StringBuilder("[\n");
+        Map<String, Double> scores = new HashMap<String, Double>();
+        for (Microbenchmark benchmark : benchmarks) {
+            if (!filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+
+            for (int param : benchmark.getParams()) {
+                double[] results = measure(benchmark, param, warmup, iterations, time);
+                double score = mean(results), error = error(results);
+                String label = benchmark.getName() + (benchmark.getParamName() == null ? "" : " " + benchmark.getParamName() + "=" + param);
+                console.printf(Locale.ROOT, "%-60s %12.3f +- %8.3f ns/op%n", label, score, error);
+
+                scores.put(key(benchmark.getName(), benchmark.getParamName() == null ? null : String.valueOf(param)), score);
+                if (json.length() > 2) {
+                    json.append(",\n");
+                }
+                appendResult(json, benchmark, param, warmup, iterations, time, results, score, error);
+            }
+        }
+        json.append("\n]\n");
+
+        String output = System.getProperty("bench.output", "benchmark-results.json");
+        FileWriter writer = new FileWriter(output);
+        writer.write(json.toString());
+        writer.close();
+        console.println("Results written to " + output);
+
+        String baseline = System.getProperty("bench.baseline");
+        if (baseline != null && compare(baseline, scores, Double.parseDouble(System.getProperty("bench.threshold", "10")))) {
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Warms a benchmark up and then times it
+     *
+     * @param benchmark Benchmark to run
+     * @param param Value of its parameter
+     * @param warmup Number of warmup iterations
+     * @param iterations Number of measured iterations
+     * @param time Length of each iteration, in nanoseconds
+     * @return Average time per operation in each measured iteration, in
+     * nanoseconds
+     * @throws Exception
+     */
+    public static double[] measure(Microbenchmark benchmark, int param, int warmup, int iterations, long time) throws Exception {
+        benchmark.setup(param);
+
+        // Grow the batch until a call is long enough that timing it is
+        // accurate
+        int batch = 1;
+        while (batch < (1 << 24)) {
+            long start = System.nanoTime();
+            sink += benchmark.run(batch);
+            if (System.nanoTime() - start >= MIN_BATCH_NANOS) {
+                break;
+            }
+            batch <<= 1;
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            iteration(benchmark, batch, time);
+        }
+
+        double[] results = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            results[i] = iteration(benchmark, batch, time);
+        }
+        return results;
+    }
+
+    /**
+     * Runs a benchmark for a set time
+     *
+     * @param benchmark Benchmark to run
+     * @param batch Operations per call
+     * @param time Length of the iteration, in nanoseconds
+     * @return Average time per operation, in nanoseconds
+     * @throws Exception
+     */
+    public static double iteration(Microbenchmark benchmark, int batch, long time) throws Exception {
+        long operations = 0, start = System.nanoTime(), elapsed;
+        do {
+            sink += benchmark.run(batch);
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < time);
+
+        return (double) elapsed / operations;
+    }
+
+    /**
+     * @param values Samples
+     * @return Mean of the samples
+     */
+    public static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * @param values Samples
+     * @return Half width of the 99.9% confidence interval around the mean,
+     * or NaN with fewer than two samples
+     */
+    public static double error(double[] values) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+
+        double mean = mean(values), squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double t = values.length - 1 <= T_999.length ? T_999[values.length - 2] : 3.291;
+        return t * Math.sqrt(squares / (values.length - 1)) / Math.sqrt(values.length);
+    }
+
+    /**
+     * Appends one result in JMH's JSON layout
+     *
+     * @param json JSON being built
+     * @param benchmark Benchmark that was run
+     * @param param Value of its parameter
+     * @param warmup Number of warmup iterations
+     * @param iterations Number of measured iterations
+     * @param time Length of each iteration, in nanoseconds
+     * @param results Time per operation in each iteration
+     * @param score Mean time per operation
+     * @param error Half width of the confidence interval
+     */
+    public static void appendResult(StringBuilder json, Microbenchmark benchmark, int param, int warmup, int iterations,
+            long time, double[] results, double score, double error) {
+        String iterationTime = (time / 1000000L) + " ms";
+
+        json.append("    {\n");
+        json.append("        \"benchmark\" : \"").append(benchmark.getName()).append("\",\n");
+        json.append("        \"mode\" : \"avgt\",\n");
+        json.append("        \"threads\" : 1,\n");
+        json.append("        \"forks\" : 1,\n");
+        json.append("        \"jvm\" : \"").append(escape(System.getProperty("java.home"))).append("\",\n");
+        json.append("        \"jdkVersion\" : \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("        \"warmupIterations\" : ").append(warmup).append(",\n");
+        json.append("        \"warmupTime\" : \"").append(iterationTime).append("\",\n");
+        json.append("        \"measurementIterations\" : ").append(iterations).append(",\n");
+        json.append("        \"measurementTime\" : \"").append(iterationTime).append("\",\n");
+        if (benchmark.getParamName() != null) {
+            json.append("        \"params\" : {\n");
+            json.append("            \"").append(benchmark.getParamName()).append("\" : \"").append(param).append("\"\n");
+            json.append("        },\n");
+        }
+        json.append("        \"primaryMetric\" : {\n");
+        json.append("            \"score\" : ").append(number(score)).append(",\n");
+        json.append("            \"scoreError\" : ").append(number(error)).append(",\n");
+        json.append("            \"scoreConfidence\" : [\n");
+        json.append("                ").append(number(score - error)).append(",\n");
+        json.append("                ").append(number(score + error)).append("\n");
+        json.append("            ],\n");
+        json.append("            \"scoreUnit\" : \"ns/op\",\n");
+        json.append("            \"rawData\" : [\n");
+        json.append("                [\n");
+        for (int i = 0; i < results.length; i++) {
+            json.append("                    ").append(number(results[i])).append(i + 1 < results.length ? ",\n" : "\n");
+        }
+        json.append("                ]\n");
+        json.append("            ]\n");
+        json.append("        },\n");
+        json.append("        \"secondaryMetrics\" : {\n");
+        json.append("        }\n");
+        json.append("    }");
+    }
+
+    /**
+     * Compares this run against an earlier one
+     *
+     * @param baseline JSON file written by an earlier run
+     * @param scores Scores from this run, by benchmark and parameter
+     * @param threshold Slowdown that counts as a regression, in percent
+     * @return Whether any benchmark regressed
+     * @throws IOException
+     */
+    public static boolean compare(String baseline, Map<String, Double> scores, double threshold) throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(baseline)), Charset.forName("UTF-8"));
+        Pattern result = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]+)\"(?:(?!\"benchmark\").)*?"
+                + "(?:\"params\"\\s*:\\s*\\{\\s*\"[^\"]+\"\\s*:\\s*\"([^\"]*)\"\\s*\\}(?:(?!\"benchmark\").)*?)?"
+                + "\"score\"\\s*:\\s*([-0-9.eE]+|\"NaN\")", Pattern.DOTALL);
+        Matcher matcher = result.matcher(json);
+        boolean regressed = false;
+
+        while (matcher.find()) {
+            Double current = scores.get(key(matcher.group(1), matcher.group(2)));
+            if (current == null || matcher.group(3).startsWith("\"")) {
+                continue;
+            }
+
+            double previous = Double.parseDouble(matcher.group(3));
+            double change = (current - previous) / previous * 100;
+            if (change > threshold) {
+                regressed = true;
+                console.printf(Locale.ROOT, "REGRESSION %s%s: %.3f -> %.3f ns/op (%+.1f%%)%n", matcher.group(1),
+                        matcher.group(2) == null ? "" : " [" + matcher.group(2) + "]", previous, current, change);
+            }
+        }
+
+        console.println(regressed ? "Some benchmarks regressed against " + baseline : "No regressions against " + baseline);
+        return regressed;
+    }
+
+    private static String key(String name, String param) {
+        return param == null ? name : name + "[" + param + "]";
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import protocol.PacketCodec;
+
+/**
+ * Benchmarks for encoding and decoding packet headers.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class CodecBenchmarks {
+
+    static final PacketCodec codec = new PacketCodec();
+    static final ByteBuffer buffer = ByteBuffer.allocateDirect(PacketCodec.MAX_ACK_SIZE);
+    static final int[] sackBlocks = new int[2 * PacketCodec.MAX_SACK_BLOCKS];
+
+    /**
+     * @return Every codec benchmark
+     */
+    public static List<Microbenchmark> benchmarks() {
+        return Arrays.asList(new Microbenchmark("PacketCodec.data", null) {
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    codec.encodeData(buffer, 42, i << 7);
+                    if (codec.decode(buffer)) {
+                        sum += codec.getSequenceNumber();
+                    }
+                }
+                return sum;
+            }
+        }, new Microbenchmark("PacketCodec.ack", "blocks", 0, 4, 16) {
+            int blocks;
+
+            @Override
+            public void setup(int param) {
+                blocks = param;
+                // Blocks a few packets apart, as after scattered losses
+                for (int i = 0; i < 2 * blocks; i += 2) {
+                    sackBlocks[i] = 1000 + 10 * i;
+                    sackBlocks[i + 1] = sackBlocks[i] + 7;
+                }
+            }
+
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    codec.encodeAck(buffer, 42, 990 + (i & 7), 64, 200000L, sackBlocks, blocks);
+                    if (codec.decode(buffer)) {
+                        sum += codec.getCumulativeAck() + codec.getSackBlocks();
+                    }
+                }
+                return sum;
+            }
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checks that delay based congestion control gives up nothing on a clean
+ * path. Transfers over loopback with Reno and with Vegas take turns, so both
+ * see the same machine, and the median rate of each is compared. Loopback
+ * has no queue to speak of, only the jitter of the threads at either end,
+ * so Vegas should keep up with Reno while holding packets for less time.
+ *
+ * Settings are system properties, lists separated by commas:
+ *
+ * <pre>
+ * compare.windows    window sizes (64,256)
+ * compare.packets    packets per transfer (20000)
+ * compare.segment    bytes of file data per packet, 0 for none (1400)
+ * compare.runs       runs of each algorithm per window (5)
+ * compare.tolerance  shortfall of Vegas below Reno that counts as a
+ *                    regression, in percent (10)
+ * compare.timeout    seconds before a transfer is abandoned (120)
+ * compare.output     JSON file to write (congestion-results.json)
+ * </pre>
+ *
+ * The run exits with status 1 if Vegas fell short of Reno at any window size,
+ * or if a transfer failed.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class CongestionComparison {
+
+    static final String[] ALGORITHMS = {"reno", "vegas"};
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int[] windows = Loopback.ints(System.getProperty("compare.windows", "64,256"));
+        int packets = Integer.getInteger("compare.packets", 20000), segment = Integer.getInteger("compare.segment", 1400);
+        int runs = Integer.getInteger("compare.runs", 5);
+        double tolerance = Double.parseDouble(System.getProperty("compare.tolerance", "10")) / 100;
+        long timeout = Long.getLong("compare.timeout", 120L) * 1000L;
+
+        File workDir = File.createTempFile("congestion", "");
+        workDir.delete();
+        workDir.mkdirs();
+
+        List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+        boolean passed = true;
+        try {
+            File input = segment > 0 ? Loopback.createInput(workDir, (long) packets * segment, 1L) : null;
+            for (int window : windows) {
+                double[][] rates = new double[ALGORITHMS.length][runs], latencies = new double[ALGORITHMS.length][runs];
+                for (int run = 0; run < runs; run++) {
+                    for (int a = 0; a < ALGORITHMS.length; a++) {
+                        Map<String, String> result = Loopback.transfer(workDir, window, packets, segment, "none",
+                                "sack", ALGORITHMS[a], run + 1, input, timeout);
+                        result.put("congestion", ALGORITHMS[a]);
+                        result.put("run", String.valueOf(run + 1));
+                        results.add(result);
+                        if (!"ok".equals(result.get("status"))) {
+                            System.out.println("Window " + window + ", " + ALGORITHMS[a] + ": " + result.get("status"));
+                            passed = false;
+                            continue;
+                        }
+                        rates[a][run] = Double.parseDouble(result.get("packets_per_second"));
+                        latencies[a][run] = Double.parseDouble(result.get("latency_p50_us"));
+                    }
+                }
+
+                double reno = median(rates[0]), vegas = median(rates[1]);
+                boolean ok = vegas >= reno * (1 - tolerance);
+                System.out.printf(Locale.ROOT,
+                        "window=%d reno_pps=%.1f vegas_pps=%.1f ratio=%.3f reno_p50_us=%.1f vegas_p50_us=%.1f %s%n",
+                        window, reno, vegas, vegas / reno, median(latencies[0]), median(latencies[1]),
+                        ok ? "ok" : "REGRESSION");
+                passed &= ok;
+            }
+        } finally {
+            Loopback.delete(workDir);
+        }
+
+        String output = System.getProperty("compare.output", "congestion-results.json");
+        Loopback.writeJson(output, results);
+        System.out.println("Results written to " + output);
+        System.exit(passed ? 0 : 1);
+    }
+
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
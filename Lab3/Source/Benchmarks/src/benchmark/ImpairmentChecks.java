@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import protocol.Datagram;
+import protocol.DatagramPool;
+import protocol.ImpairmentEngine;
+
+/**
+ * Checks that the impairment engine hands back what it was given. A receiver
+ * listening on several sockets answers each session on the socket its
+ * packets arrive on, so a duplicate has to come out of the engine with the
+ * socket of its original as well as the address, or the session's ACKs go
+ * out from a port its sender does not listen to.
+ *
+ * The run exits with status 1 if any check fails.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class ImpairmentChecks {
+
+    static final int SOCKETS = 4, PACKETS = 1000;
+
+    static int failures;
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        duplicatesKeepTheirSocket();
+        System.out.println(failures == 0 ? "All checks passed." : failures + " checks failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Duplicates every packet arriving on each of several sockets, and checks
+     * that both copies come out with the original's socket, address and
+     * contents
+     */
+    static void duplicatesKeepTheirSocket() {
+        DatagramPool pool = new DatagramPool(64, 16);
+        ImpairmentEngine engine = new ImpairmentEngine("duplicate:1", 1L, pool);
+        int[] copies = new int[SOCKETS];
+
+        // Warm the pool up with datagrams that last arrived on other
+        // sockets, as a receiver's would be
+        for (int i = 0; i < PACKETS; i++) {
+            Datagram datagram = pool.acquire();
+            datagram.socket = i % SOCKETS;
+            datagram.address = address(i % SOCKETS);
+            datagram.buffer.putInt(i).flip();
+            engine.offer(datagram, 0);
+
+            Datagram out;
+            while ((out = engine.poll(0)) != null) {
+                int socket = out.buffer.getInt(0) % SOCKETS;
+                check(out.socket == socket, "packet " + out.buffer.getInt(0) + " came out on socket " + out.socket
+                        + " instead of " + socket);
+                check(address(socket).equals(out.address), "packet " + out.buffer.getInt(0) + " came out from "
+                        + out.address);
+                copies[socket]++;
+                pool.release(out);
+            }
+        }
+
+        for (int s = 0; s < SOCKETS; s++) {
+            check(copies[s] == 2 * PACKETS / SOCKETS, "socket " + s + " got " + copies[s] + " packets");
+        }
+        System.out.println("duplicatesKeepTheirSocket: " + engine);
+    }
+
+    static SocketAddress address(int socket) {
+        return new InetSocketAddress("127.0.0.1", 9876 + socket);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            if (failures++ < 10) {
+                System.out.println("FAILED: " + message);
+            }
+        }
+    }
+}
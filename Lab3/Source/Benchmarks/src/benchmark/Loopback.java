@@ -0,0 +1,387 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * End-to-end goodput benchmark. For every combination of settings it starts
+ * a Receiver and a Sender as separate JVMs talking over loopback on a fresh
+ * port, waits for the transfer to finish and collects the statistics the
+ * Sender prints when it is done. File transfers are checked byte for byte.
+ *
+ * Settings are system properties, lists separated by commas:
+ *
+ * <pre>
+ * loopback.windows     window sizes (16,64,256)
+ * loopback.packets     packets per transfer (10000)
+ * loopback.segments    bytes of file data per packet, 0 for none (0,1400)
+ * loopback.impair      impairment profiles for the Sender, separated by
+ *                      semicolons, "none" for a clean network (none)
+ * loopback.arq         ARQ strategies, see ArqStrategy (sack)
+ * loopback.congestion  congestion control algorithm (reno)
+ * loopback.pacing      whether the Sender paces its packets, on or off (on)
+ * loopback.stripes     stripes each transfer is split across, with a
+ *                      receiver socket for each (1)
+ * loopback.log         log level of both ends (info)
+ * loopback.runs        runs of each combination (1)
+ * loopback.seed        seed for the impairments and file contents (1)
+ * loopback.timeout     seconds before a transfer is abandoned (120)
+ * loopback.output      JSON file to write (loopback-results.json)
+ * </pre>
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Loopback {
+
+    static final String[] COLUMNS = {"window", "packets", "segment", "impair", "arq", "run", "seconds", "goodput_mbps",
+        "packets_per_second", "retransmission_ratio", "latency_p50_us", "latency_p99_us", "status"};
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int[] windows = ints(System.getProperty("loopback.windows", "16,64,256"));
+        int[] packetCounts = ints(System.getProperty("loopback.packets", "10000"));
+        int[] segments = ints(System.getProperty("loopback.segments", "0,1400"));
+        String[] profiles = System.getProperty("loopback.impair", "none").split(";");
+        String[] strategies = System.getProperty("loopback.arq", "sack").split(",");
+        String congestion = System.getProperty("loopback.congestion", "reno");
+        int runs = Integer.getInteger("loopback.runs", 1);
+        long seed = Long.getLong("loopback.seed", 1L), timeout = Long.getLong("loopback.timeout", 120L) * 1000L;
+
+        File workDir = File.createTempFile("loopback", "");
+        workDir.delete();
+        workDir.mkdirs();
+
+        List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+        System.out.printf(Locale.ROOT, "%7s %8s %8s %-28s %4s %4s %9s %10s %10s %9s %10s %10s %s%n", (Object[]) COLUMNS);
+
+        try {
+            for (int packets : packetCounts) {
+                for (int segment : segments) {
+                    File input = segment > 0 ? createInput(workDir, (long) packets * segment, seed) : null;
+                    for (String profile : profiles) {
+                        for (int window : windows) {
+                            for (String arq : strategies) {
+                                for (int run = 1; run <= runs; run++) {
+                                    Map<String, String> result = transfer(workDir, window, packets, segment,
+                                            profile.trim(), arq.trim(), congestion, seed + run - 1, input, timeout);
+                                    result.put("run", String.valueOf(run));
+                                    results.add(result);
+                                    print(result);
+                                }
+                            }
+                        }
+                    }
+                    if (input != null) {
+                        input.delete();
+                    }
+                }
+            }
+        } finally {
+            delete(workDir);
+        }
+
+        String output = System.getProperty("loopback.output", "loopback-results.json");
+        writeJson(output, results);
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * Runs one transfer
+     *
+     * @param workDir Directory for logs and received files
+     * @param window Window size
+     * @param packets Packets in the transfer, if there is no file
+     * @param segment Bytes of file data per packet, or 0
+     * @param profile Impairment profile, or "none"
+     * @param arq ARQ strategy
+     * @param congestion Congestion control algorithm
+     * @param seed Seed for the impairments
+     * @param input File to send, or null
+     * @param timeout Milliseconds before the transfer is abandoned
+     * @return Settings and statistics of the run
+     * @throws Exception
+     */
+    public static Map<String, String> transfer(File workDir, int window, int packets, int segment, String profile,
+            String arq, String congestion, long seed, File input, long timeout) throws Exception {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put("window", String.valueOf(window));
+        result.put("packets", String.valueOf(packets));
+        result.put("segment", String.valueOf(segment));
+        result.put("impair", profile);
+        result.put("arq", arq);
+        result.put("pacing", System.getProperty("loopback.pacing", "on"));
+        int stripes = Integer.getInteger("loopback.stripes", 1);
+        result.put("stripes", String.valueOf(stripes));
+
+        File outputDir = new File(workDir, "received");
+        delete(outputDir);
+        outputDir.mkdirs();
+        File senderLog = new File(workDir, "sender.log"), receiverLog = new File(workDir, "receiver.log");
+        int port = freePort();
+
+        List<String> receiverArgs = new ArrayList<String>();
+        receiverArgs.add("-Dreceiver.port=" + port);
+        receiverArgs.add("-Dreceiver.sockets=" + stripes);
+        receiverArgs.add("-Doutput.dir=" + outputDir.getPath());
+        receiverArgs.add("-Dlog.level=" + System.getProperty("loopback.log", "info"));
+        if (segment > 0) {
+            receiverArgs.add("-Dsegment.max=" + segment);
+        }
+        Process receiver = java(receiverArgs, "receiver.Receiver", null, receiverLog);
+
+        try {
+            List<String> senderArgs = new ArrayList<String>();
+            senderArgs.add("-Dreceiver.port=" + port);
+            senderArgs.add("-Dwindow.size=" + window);
+            senderArgs.add("-Dpackets=" + packets);
+            senderArgs.add("-Ddrops=0");
+            senderArgs.add("-Dcongestion=" + congestion);
+            senderArgs.add("-Darq=" + arq);
+            senderArgs.add("-Dpacing=" + System.getProperty("loopback.pacing", "on"));
+            senderArgs.add("-Dstripes=" + stripes);
+            senderArgs.add("-Dreceiver.sockets=" + stripes);
+            senderArgs.add("-Dlog.level=" + System.getProperty("loopback.log", "info"));
+            if (segment > 0) {
+                senderArgs.add("-Dsegment.size=" + segment);
+            }
+            if (!profile.isEmpty() && !profile.equalsIgnoreCase("none")) {
+                senderArgs.add("-Dimpair=" + profile);
+                senderArgs.add("-Dimpair.seed=" + seed);
+            }
+            Process sender = java(senderArgs, "sender.Sender", input, senderLog);
+
+            if (!waitFor(sender, timeout)) {
+                sender.destroy();
+                result.put("status", "timeout");
+                return result;
+            }
+        } finally {
+            receiver.destroy();
+        }
+
+        result.putAll(readSummary(senderLog));
+        if (!result.containsKey("seconds")) {
+            result.put("status", "failed");
+        } else if (input != null) {
+            // The receiver finishes the file once the last packet is in,
+            // which may be just after the sender hears about it
+            waitFor(receiver, 1000);
+            File[] received = outputDir.listFiles();
+            result.put("status", received != null && received.length == 1 && sameContents(input, received[0]) ? "ok" : "corrupt");
+        } else {
+            result.put("status", "ok");
+        }
+        return result;
+    }
+
+    /**
+     * Starts a class from the current classpath in a new JVM
+     *
+     * @param properties Arguments for the JVM
+     * @param mainClass Class to run
+     * @param input File to pass as the only argument, or null
+     * @param log File that receives the output
+     * @return The process
+     * @throws IOException
+     */
+    public static Process java(List<String> properties, String mainClass, File input, File log) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(properties);
+        command.add(mainClass);
+        if (input != null) {
+            command.add(input.getPath());
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(log);
+        return builder.start();
+    }
+
+    /**
+     * Waits for a process to exit
+     *
+     * @param process Process to wait for
+     * @param timeout Longest to wait, in milliseconds
+     * @return Whether the process exited
+     * @throws InterruptedException
+     */
+    public static boolean waitFor(Process process, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException ex) {
+                Thread.sleep(20);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the statistics line the Sender prints when it is done
+     *
+     * @param log Sender's output
+     * @return Statistics by name, empty if the line is missing
+     * @throws IOException
+     */
+    public static Map<String, String> readSummary(File log) throws IOException {
+        Map<String, String> summary = new LinkedHashMap<String, String>();
+        BufferedReader reader = new BufferedReader(new FileReader(log));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("Summary:")) {
+                    continue;
+                }
+                for (String field : line.substring("Summary:".length()).trim().split("\\s+")) {
+                    int equals = field.indexOf('=');
+                    if (equals > 0) {
+                        summary.put(field.substring(0, equals), field.substring(equals + 1));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return summary;
+    }
+
+    /**
+     * @return A UDP port nobody is using right now
+     * @throws IOException
+     */
+    public static int freePort() throws IOException {
+        DatagramSocket socket = new DatagramSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    /**
+     * Writes a file of random bytes
+     *
+     * @param dir Directory to write it in
+     * @param size Size of the file, in bytes
+     * @param seed Seed for the contents
+     * @return The file
+     * @throws IOException
+     */
+    public static File createInput(File dir, long size, long seed) throws IOException {
+        File file = new File(dir, "input-" + size + ".bin");
+        Random random = new Random(seed);
+        byte[] block = new byte[65536];
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * @param a First file
+     * @param b Second file
+     * @return Whether the files hold the same bytes
+     * @throws IOException
+     */
+    public static boolean sameContents(File a, File b) throws IOException {
+        if (a.length() != b.length()) {
+            return false;
+        }
+
+        InputStream inA = new BufferedInputStream(new FileInputStream(a)), inB = new BufferedInputStream(new FileInputStream(b));
+        try {
+            int c;
+            while ((c = inA.read()) != -1) {
+                if (c != inB.read()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            inA.close();
+            inB.close();
+        }
+    }
+
+    private static void print(Map<String, String> result) {
+        Object[] values = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            String value = result.get(COLUMNS[i]);
+            values[i] = value == null ? "-" : value;
+        }
+        System.out.printf(Locale.ROOT, "%7s %8s %8s %-28s %4s %4s %9s %10s %10s %9s %10s %10s %s%n", values);
+    }
+
+    static void writeJson(String output, List<Map<String, String>> results) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            json.append("    {");
+            boolean first = true;
+            for (Map.Entry<String, String> field : results.get(i).entrySet()) {
+                json.append(first ? "\n" : ",\n").append("        \"").append(field.getKey()).append("\" : ");
+                json.append(isNumber(field.getValue()) ? field.getValue()
+                        : "\"" + field.getValue().replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+                first = false;
+            }
+            json.append("\n    }").append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("]\n");
+
+        FileWriter writer = new FileWriter(output);
+        writer.write(json.toString());
+        writer.close();
+    }
+
+    private static boolean isNumber(String value) {
+        return value.matches("-?[0-9]+(\\.[0-9]+)?");
+    }
+
+    static int[] ints(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+/**
+ * One benchmark, run once for each of its parameter values. Each benchmark
+ * runs its own loop, so the JIT compiles every loop for exactly one piece of
+ * code instead of going through a call site shared by every benchmark.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public abstract class Microbenchmark {
+
+    private final String name, paramName;
+    private final int[] params;
+
+    /**
+     * @param name Name of the benchmark, as it appears in the results
+     * @param paramName Name of the parameter, or null if there is none
+     * @param params Values of the parameter to run with
+     */
+    public Microbenchmark(String name, String paramName, int... params) {
+        this.name = name;
+        this.paramName = paramName;
+        this.params = paramName == null ? new int[]{0} : params;
+    }
+
+    /**
+     * @return Name of the benchmark
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Name of the parameter, or null if there is none
+     */
+    public String getParamName() {
+        return paramName;
+    }
+
+    /**
+     * @return Values of the parameter to run with
+     */
+    public int[] getParams() {
+        return params;
+    }
+
+    /**
+     * Prepares the state for a run, outside of the timed section
+     *
+     * @param param Value of the parameter
+     * @throws Exception
+     */
+    public void setup(int param) throws Exception {
+    }
+
+    /**
+     * Runs the operation being measured a number of times
+     *
+     * @param operations Number of times to run the operation
+     * @return A value depending on every operation, so none of them can be
+     * optimized away
+     * @throws Exception
+     */
+    public abstract long run(int operations) throws Exception;
+}
@@ -0,0 +1,341 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import protocol.ArqStrategy;
+import protocol.Clock;
+import protocol.Datagram;
+import protocol.DatagramPool;
+import protocol.EventLog;
+import protocol.Histogram;
+import protocol.Pacer;
+import protocol.ImpairmentEngine;
+import protocol.PacketCodec;
+import protocol.TransportMetrics;
+import receiver.Session;
+import sender.SenderSession;
+
+/**
+ * Discrete-event simulation of transfers. The Sender's and the Receiver's
+ * own session state machines run against a virtual clock, joined by two
+ * emulated links (see ImpairmentEngine), one carrying packets and one
+ * carrying ACKs back. Time jumps straight to the next thing that happens: a
+ * packet coming off a link, a delayed ACK falling due, or the next tick of
+ * the retransmission timers. Nothing touches a socket or the wall clock, so
+ * a run depends only on its settings and seed, and runs far faster than
+ * real time. Independent runs are spread across cores.
+ *
+ * The handshake is not simulated; the receiver opens its session straight
+ * from the SYN. Transfers carry no file, but every packet crosses the link
+ * at the size it would have with one, so rate limits behave as they would.
+ *
+ * Settings are system properties, lists separated by commas:
+ *
+ * <pre>
+ * sim.windows     window sizes (16,64,256)
+ * sim.packets     packets per transfer (100000)
+ * sim.segment     bytes of file data each packet stands for (1400)
+ * sim.impair      impairment profiles of the forward link, separated by
+ *                 semicolons (rate:100mbit,delay:5ms;
+ *                 loss:0.01,rate:100mbit,delay:5ms)
+ * sim.reverse     impairment profile of the return link (delay:5ms)
+ * sim.fec         FEC group sizes, 0 for none (0)
+ * sim.arq         ARQ strategies, see ArqStrategy (gbn,sr,sack)
+ * sim.consumer    packets per second the receiver handles, 0 for as many
+ *                 as arrive (0)
+ * sim.buffer      packets that may wait for the receiver (1024)
+ * sim.flow        whether the receiver advertises the room it has left,
+ *                 on or off; off advertises the whole buffer (on)
+ * sim.pacing      whether the sender paces new packets over the round trip,
+ *                 on or off, with a gain of 2 and bursts of 4 (off)
+ * sim.congestion  congestion control algorithm (reno)
+ * sim.runs        runs of each combination, with consecutive seeds (1)
+ * sim.seed        seed of the first run (1)
+ * sim.limit       simulated seconds before a run is abandoned (600)
+ * sim.threads     runs at once (one per processor)
+ * sim.output      JSON file to write (simulation-results.json)
+ * </pre>
+ *
+ * Besides goodput, each run reports the receiver's window and the most
+ * packets it had to hold past a hole at once, which is what the ARQ
+ * strategy costs the receiver in memory, and the packets the receiver had
+ * to drop for want of room.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Simulator {
+
+    static final String[] COLUMNS = {"window", "impair", "arq", "fec", "flow", "pacing", "run", "seconds",
+        "goodput_mbps", "packets_per_second", "retransmission_ratio", "recovered", "peak_held", "receiver_drops",
+        "latency_p50_us", "latency_p99_us", "wall_ms", "status"};
+    static final String FORMAT = "%7s %-36s %4s %4s %4s %6s %4s %9s %10s %10s %9s %9s %9s %9s %10s %10s %8s %s%n";
+
+    /**
+     * A clock that only moves when the simulation moves it
+     */
+    static class VirtualClock implements Clock {
+
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final int[] windows = Loopback.ints(System.getProperty("sim.windows", "16,64,256"));
+        final long packets = Long.getLong("sim.packets", 100000L);
+        final int segment = Integer.getInteger("sim.segment", 1400);
+        String[] profiles = System.getProperty("sim.impair", "rate:100mbit,delay:5ms;loss:0.01,rate:100mbit,delay:5ms")
+                .split(";");
+        final String reverse = System.getProperty("sim.reverse", "delay:5ms");
+        int[] fecGroups = Loopback.ints(System.getProperty("sim.fec", "0"));
+        String[] strategies = System.getProperty("sim.arq", "gbn,sr,sack").split(",");
+        final int consumer = Integer.getInteger("sim.consumer", 0), buffer = Integer.getInteger("sim.buffer", 1024);
+        String[] flows = System.getProperty("sim.flow", "on").split(",");
+        String[] pacings = System.getProperty("sim.pacing", "off").split(",");
+        final String congestion = System.getProperty("sim.congestion", "reno");
+        int runs = Integer.getInteger("sim.runs", 1);
+        long seed = Long.getLong("sim.seed", 1L);
+        final long limit = Long.getLong("sim.limit", 600L) * 1000000000L;
+        int threads = Integer.getInteger("sim.threads", Runtime.getRuntime().availableProcessors());
+
+        // Runs share nothing, so they go to a pool; results are collected
+        // in the order of the sweep however they finish
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Map<String, String>>> futures = new ArrayList<Future<Map<String, String>>>();
+        for (String profile : profiles) {
+            for (int window : windows) {
+                for (String strategy : strategies) {
+                    for (int fecGroup : fecGroups) {
+                        for (String flow : flows) {
+                            for (String pacing : pacings) {
+                                for (int run = 1; run <= runs; run++) {
+                                    final String forward = profile.trim(), arq = strategy.trim();
+                                    final int w = window, k = fecGroup, r = run;
+                                    final boolean f = flow.trim().equalsIgnoreCase("on");
+                                    final boolean p = pacing.trim().equalsIgnoreCase("on");
+                                    final long s = seed + run - 1;
+                                    futures.add(pool.submit(new Callable<Map<String, String>>() {
+                                        @Override
+                                        public Map<String, String> call() throws IOException {
+                                            Map<String, String> result = simulate(w, packets, segment, forward,
+                                                    reverse, arq, k, consumer, buffer, f, p, congestion, s, limit);
+                                            result.put("run", String.valueOf(r));
+                                            return result;
+                                        }
+                                    }));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+        System.out.printf(Locale.ROOT, FORMAT, (Object[]) COLUMNS);
+        try {
+            for (Future<Map<String, String>> future : futures) {
+                Map<String, String> result = future.get();
+                results.add(result);
+                print(result);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        String output = System.getProperty("sim.output", "simulation-results.json");
+        Loopback.writeJson(output, results);
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * Simulates one transfer
+     *
+     * @param window Window size
+     * @param packets Packets in the transfer
+     * @param segment Bytes of file data each packet stands for
+     * @param forwardSpec Impairment spec of the link from sender to receiver
+     * @param reverseSpec Impairment spec of the link back
+     * @param arq ARQ strategy
+     * @param fecGroup Data packets per parity packet, or 0 for none
+     * @param consumer Packets per second the receiver handles, or 0 for as
+     * many as arrive
+     * @param buffer Packets that may wait for the receiver
+     * @param flow Whether the receiver advertises the room it has left
+     * @param pacing Whether the sender paces new packets
+     * @param congestion Congestion control algorithm
+     * @param seed Seed for both links
+     * @param limit Simulated nanoseconds before the run is abandoned
+     * @return Settings and statistics of the run
+     * @throws IOException
+     */
+    public static Map<String, String> simulate(int window, long packets, int segment, String forwardSpec,
+            String reverseSpec, String arq, int fecGroup, int consumer, int buffer, boolean flow, boolean pacing,
+            String congestion, long seed, long limit) throws IOException {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put("window", String.valueOf(window));
+        result.put("packets", String.valueOf(packets));
+        result.put("segment", String.valueOf(segment));
+        result.put("impair", forwardSpec);
+        result.put("reverse", reverseSpec);
+        result.put("arq", arq);
+        result.put("fec", String.valueOf(fecGroup));
+        result.put("consumer", String.valueOf(consumer));
+        result.put("buffer", String.valueOf(buffer));
+        result.put("flow", flow ? "on" : "off");
+        result.put("pacing", pacing ? "on" : "off");
+        long wallStart = System.nanoTime();
+
+        VirtualClock clock = new VirtualClock();
+        DatagramPool pool = new DatagramPool(PacketCodec.MAX_HEADER_SIZE + segment, 1024);
+        ImpairmentEngine forward = new ImpairmentEngine(forwardSpec, seed, pool);
+        ImpairmentEngine backward = new ImpairmentEngine(reverseSpec, ~seed, pool);
+        EventLog log = new EventLog(16, EventLog.OFF);
+        TransportMetrics senderMetrics = new TransportMetrics(), receiverMetrics = new TransportMetrics();
+
+        // The sender's packets collect in an outbox with no impairments, and
+        // are made up to full size on their way onto the link
+        ImpairmentEngine outbox = new ImpairmentEngine(seed, pool);
+        SenderSession sender = new SenderSession(null, null, window, packets, 0, congestion, senderMetrics, log);
+        sender.setClock(clock);
+        sender.setImpairment(outbox, pool);
+        sender.setFecGroup(fecGroup);
+        sender.initArq(arq);
+        if (pacing) {
+            sender.setPacer(new Pacer(2, 4));
+        }
+
+        PacketCodec codec = new PacketCodec(), ackCodec = new PacketCodec();
+        codec.decode(sender.initSyn());
+        Session receiver = new Session(codec, null, log, receiverMetrics, clock);
+
+        // Packets wait for the receiver in a queue, as they do for a worker
+        ArrayDeque<Datagram> queue = new ArrayDeque<Datagram>();
+        long serviceNanos = consumer > 0 ? 1000000000L / consumer : 0, nextService = 0;
+
+        while (!sender.getWindow().isComplete() && clock.now < limit) {
+            Datagram datagram;
+            while ((datagram = backward.poll(clock.now)) != null) {
+                sender.receivePacket(null, datagram.buffer);
+                pool.release(datagram);
+            }
+            sender.expireTimers(null);
+            sender.sendWindow(null);
+
+            while ((datagram = outbox.poll(clock.now)) != null) {
+                // Only the header was written; the receiver never reads
+                // the rest
+                datagram.buffer.limit(datagram.buffer.limit() + segment);
+                forward.offer(datagram, clock.now);
+            }
+
+            while ((datagram = forward.poll(clock.now)) != null) {
+                if (queue.size() < buffer) {
+                    queue.addLast(datagram);
+                } else {
+                    receiverMetrics.onDrop();
+                    pool.release(datagram);
+                }
+            }
+
+            while (!queue.isEmpty() && clock.now - nextService >= 0) {
+                datagram = queue.pollFirst();
+                nextService = clock.now + serviceNanos;
+                if (codec.decode(datagram.buffer)) {
+                    boolean ackNow = false;
+                    if (codec.getType() == PacketCodec.DATA) {
+                        ackNow = receiver.receive(datagram, codec);
+                    } else if (codec.getType() == PacketCodec.PARITY) {
+                        ackNow = receiver.receiveParity(datagram, codec);
+                    }
+                    if (ackNow) {
+                        sendAck(receiver, ackCodec, flow ? buffer - queue.size() : buffer, pool, backward, clock.now,
+                                receiverMetrics);
+                    }
+                }
+                pool.release(datagram);
+            }
+            if (receiver.hasPendingAcks() && clock.now - receiver.getAckDeadline() >= 0) {
+                sendAck(receiver, ackCodec, flow ? buffer - queue.size() : buffer, pool, backward, clock.now,
+                        receiverMetrics);
+            }
+
+            // Jump to whatever happens next, but no further than the next
+            // tick of the retransmission timers
+            long next = Math.min(SenderSession.TICK_NANOS,
+                    Math.min(forward.timeUntilNext(clock.now), backward.timeUntilNext(clock.now)));
+            if (receiver.hasPendingAcks()) {
+                next = Math.min(next, Math.max(0, receiver.getAckDeadline() - clock.now));
+            }
+            if (!queue.isEmpty()) {
+                next = Math.min(next, Math.max(0, nextService - clock.now));
+            }
+            next = Math.min(next, sender.getPacingDelay());
+            clock.now += next;
+        }
+
+        double seconds = clock.now / 1e9;
+        long sent = senderMetrics.getPacketsSent(), resent = senderMetrics.getRetransmissions();
+        Histogram latency = senderMetrics.getTimeInWindow().snapshot();
+        result.put("seconds", String.format(Locale.ROOT, "%.6f", seconds));
+        result.put("goodput_mbps", String.format(Locale.ROOT, "%.3f", packets * segment * 8 / seconds / 1e6));
+        result.put("packets_per_second", String.format(Locale.ROOT, "%.1f", packets / seconds));
+        result.put("sent", String.valueOf(sent));
+        result.put("resent", String.valueOf(resent));
+        result.put("retransmission_ratio", String.format(Locale.ROOT, "%.6f", sent == 0 ? 0 : (double) resent / sent));
+        result.put("recovered", String.valueOf(receiverMetrics.getRecovered()));
+        result.put("receive_window", String.valueOf(ArqStrategy.forName(arq).getReceiveWindow(window)));
+        result.put("peak_held", String.valueOf(receiver.getPeakHeld()));
+        result.put("receiver_drops", String.valueOf(receiverMetrics.getDrops()));
+        result.put("latency_p50_us", String.format(Locale.ROOT, "%.1f", latency.getPercentile(50) / 1e3));
+        result.put("latency_p99_us", String.format(Locale.ROOT, "%.1f", latency.getPercentile(99) / 1e3));
+        result.put("wall_ms", String.valueOf((System.nanoTime() - wallStart) / 1000000));
+        result.put("status", sender.getWindow().isComplete() ? "ok" : "timeout");
+        return result;
+    }
+
+    /**
+     * Puts an ACK from the receiver on the return link
+     *
+     * @param receiver Receiver's session
+     * @param codec Codec to encode the ACK with
+     * @param room Packets the receiver advertises room for
+     * @param pool Pool the links take their packets from
+     * @param backward Return link
+     * @param now Current simulated time
+     * @param metrics Receiver's metrics
+     */
+    private static void sendAck(Session receiver, PacketCodec codec, int room, DatagramPool pool,
+            ImpairmentEngine backward, long now, TransportMetrics metrics) {
+        Datagram datagram = pool.acquire();
+        datagram.buffer.put(receiver.buildAck(codec, room)).flip();
+        backward.offer(datagram, now);
+        metrics.onAck();
+    }
+
+    private static void print(Map<String, String> result) {
+        Object[] values = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            String value = result.get(COLUMNS[i]);
+            values[i] = value == null ? "-" : value;
+        }
+        System.out.printf(Locale.ROOT, FORMAT, values);
+    }
+}
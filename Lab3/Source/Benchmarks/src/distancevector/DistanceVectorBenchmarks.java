@@ -0,0 +1,152 @@
+package distancevector;
+
+import benchmark.Microbenchmark;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for encoding, decoding and applying distance vectors. The
+ * router's state is private and normally comes from a dialog and a
+ * configuration file, so it is set up here through reflection.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class DistanceVectorBenchmarks {
+
+    static final int[] VECTOR_SIZES = {3, 16, 256};
+
+    static int[] vector;
+    static byte[] encoded;
+    static ByteBuffer buffer;
+
+    /**
+     * @return Every DistanceVector benchmark
+     */
+    public static List<Microbenchmark> benchmarks() {
+        return Arrays.asList(new Microbenchmark("DistanceVector.convertIntArrayToByteArray", "routers", VECTOR_SIZES) {
+            @Override
+            public void setup(int param) throws Exception {
+                reset(param);
+            }
+
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    vector[0] = i;
+                    sum += DistanceVector.convertIntArrayToByteArray(vector)[3];
+                }
+                return sum;
+            }
+        }, new Microbenchmark("DistanceVector.convertIntArrayToByteArray.inPlace", "routers", VECTOR_SIZES) {
+            @Override
+            public void setup(int param) throws Exception {
+                reset(param);
+            }
+
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    vector[0] = i;
+                    DistanceVector.convertIntArrayToByteArray(vector, buffer);
+                    sum += buffer.get(3);
+                }
+                return sum;
+            }
+        }, new Microbenchmark("DistanceVector.covertByteArrayToIntArray", "routers", VECTOR_SIZES) {
+            @Override
+            public void setup(int param) throws Exception {
+                reset(param);
+            }
+
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    encoded[3] = (byte) i;
+                    sum += DistanceVector.covertByteArrayToIntArray(encoded)[0];
+                }
+                return sum;
+            }
+        }, new Microbenchmark("DistanceVector.covertByteArrayToIntArray.inPlace", "routers", VECTOR_SIZES) {
+            @Override
+            public void setup(int param) throws Exception {
+                reset(param);
+            }
+
+            @Override
+            public long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    buffer.put(3, (byte) i);
+                    DistanceVector.covertByteArrayToIntArray(buffer, vector);
+                    sum += vector[0];
+                }
+                return sum;
+            }
+        }, new Microbenchmark("DistanceVector.updateDistanceVector", "routers", VECTOR_SIZES) {
+            int[] routerPorts;
+
+            @Override
+            public void setup(int param) throws Exception {
+                reset(param);
+                routerPorts = (int[]) field("routerPorts").get(null);
+            }
+
+            // Vectors arrive from each neighbor in turn
+            @Override
+            public long run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    DistanceVector.updateDistanceVector(routerPorts[1 + (i & 1)]);
+                }
+                return operations;
+            }
+        });
+    }
+
+    /**
+     * Sets up router 0 of a network of the given size, with random link
+     * costs, and a vector received from a neighbor
+     *
+     * @param routers Number of routers
+     * @throws Exception
+     */
+    static void reset(int routers) throws Exception {
+        Random random = new Random(routers);
+        int[] routerPorts = new int[routers], distanceVector = new int[routers];
+        for (int i = 0; i < routers; i++) {
+            routerPorts[i] = 10000 + i;
+            distanceVector[i] = i == 0 ? 0 : 1 + random.nextInt(100);
+        }
+
+        vector = new int[routers];
+        for (int i = 0; i < routers; i++) {
+            vector[i] = 1 + random.nextInt(100);
+        }
+
+        // The vector the router reads, and a standalone copy of it
+        buffer = ByteBuffer.allocate(4 * routers);
+        for (int i = 0; i < routers; i++) {
+            buffer.putInt(4 * i, vector[i]);
+        }
+        encoded = buffer.array().clone();
+
+        field("routerID").setInt(null, 0);
+        field("routerPorts").set(null, routerPorts);
+        field("distanceVector").set(null, distanceVector);
+        field("incomingDistanceVector").set(null, new int[routers]);
+        field("sendBuffer").set(null, ByteBuffer.allocate(4 * routers));
+        field("rcvBuffer").set(null, buffer.duplicate());
+    }
+
+    private static Field field(String name) throws NoSuchFieldException {
+        Field field = DistanceVector.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
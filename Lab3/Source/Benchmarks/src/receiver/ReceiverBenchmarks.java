@@ -0,0 +1,111 @@
+package receiver;
+
+import benchmark.Microbenchmark;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import protocol.ArqStrategy;
+import protocol.Datagram;
+import protocol.EventLog;
+import protocol.PacketCodec;
+
+/**
+ * Benchmarks for the Receiver's per-packet path. These live in the receiver
+ * package so they can drive a Session directly, without a socket.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class ReceiverBenchmarks {
+
+    static final int[] WINDOW_SIZES = {16, 256, 4096};
+
+    // Shared by every session, as the benchmarks all run on one thread
+    static final EventLog log = new EventLog(65536);
+
+    /**
+     * @return Every Receiver benchmark
+     */
+    public static List<Microbenchmark> benchmarks() {
+        return Arrays.asList(new Microbenchmark("Receiver.updateWindow.inOrder", "windowSize", WINDOW_SIZES) {
+            Session session;
+            int next;
+
+            @Override
+            public void setup(int param) throws Exception {
+                session = open(param);
+                next = 0;
+            }
+
+            @Override
+            public long run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    session.updateWindow(next++);
+                }
+                return session.window.getDelivered();
+            }
+        }, new Microbenchmark("Receiver.updateWindow.reordered", "windowSize", WINDOW_SIZES) {
+            Session session;
+            int next;
+
+            @Override
+            public void setup(int param) throws Exception {
+                session = open(param);
+                next = 0;
+            }
+
+            // Every pair of packets arrives swapped
+            @Override
+            public long run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    session.updateWindow(next++ ^ 1);
+                }
+                return session.window.getDelivered();
+            }
+        }, new Microbenchmark("Receiver.receive", "windowSize", WINDOW_SIZES) {
+            final PacketCodec codec = new PacketCodec();
+            final Datagram rcvPkt = new Datagram(PacketCodec.MAX_HEADER_SIZE);
+            Session session;
+            int next;
+
+            @Override
+            public void setup(int param) throws Exception {
+                session = open(param);
+                rcvPkt.address = session.senderAddress;
+                next = 0;
+            }
+
+            // Decoding, windowing and deciding when to ACK, with ACKs built
+            // as they come due
+            @Override
+            public long run(int operations) {
+                long acks = 0;
+                for (int i = 0; i < operations; i++) {
+                    codec.encodeData(rcvPkt.buffer, session.sessionId, next++);
+                    codec.decode(rcvPkt.buffer);
+                    if (session.receive(rcvPkt, codec)) {
+                        acks += session.buildAck(codec, Receiver.QUEUE_SIZE).remaining();
+                    }
+                }
+                return acks;
+            }
+        });
+    }
+
+    /**
+     * Opens a session for the longest transfer a SYN may ask for, which no
+     * benchmark comes near the end of
+     *
+     * @param windowSize Window size
+     * @return New session
+     * @throws Exception
+     */
+    static Session open(int windowSize) throws Exception {
+        PacketCodec codec = new PacketCodec();
+        Datagram syn = new Datagram(PacketCodec.MAX_SYN_SIZE);
+        codec.encodeSyn(syn.buffer, 42, windowSize, 0, Session.MAX_PACKETS, 0, 0, ArqStrategy.SELECTIVE_ACK, 0, 1);
+        codec.decode(syn.buffer);
+
+        return new Session(codec, new InetSocketAddress("localhost", 9877), log);
+    }
+}
@@ -0,0 +1,104 @@
+package sender;
+
+import benchmark.Microbenchmark;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import protocol.EventLog;
+import protocol.TransportMetrics;
+
+/**
+ * Benchmarks for the Sender's window bookkeeping. These live in the sender
+ * package so they can drive a session's window directly, without a socket.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SenderBenchmarks {
+
+    static final int[] WINDOW_SIZES = {16, 256, 4096};
+
+    // Session under test, never connected to a receiver
+    static SenderSession session;
+    static final EventLog log = new EventLog(65536);
+
+    /**
+     * @return Every Sender benchmark
+     */
+    public static List<Microbenchmark> benchmarks() {
+        return Arrays.asList(new Microbenchmark("Sender.updateWindow.inOrder", "windowSize", WINDOW_SIZES) {
+            @Override
+            public void setup(int param) {
+                reset(param);
+            }
+
+            // Each operation sends a packet and then ACKs it, sliding the
+            // window by one
+            @Override
+            public long run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    int sequenceNumber = session.window.getNext();
+                    session.updateWindow(session.window, sequenceNumber, false);
+                    session.updateWindow(session.window, sequenceNumber, true);
+                }
+                return session.window.getDelivered();
+            }
+        }, new Microbenchmark("Sender.updateWindow.hole", "windowSize", WINDOW_SIZES) {
+            @Override
+            public void setup(int param) {
+                reset(param);
+            }
+
+            // Each operation sends or ACKs one packet. The first packet of
+            // every window is ACKed last, so the rest of the window piles up
+            // behind the hole and then slides all at once.
+            @Override
+            public long run(int operations) {
+                for (int i = 0; i < operations; i++) {
+                    if (session.window.canSend()) {
+                        session.updateWindow(session.window, session.window.getNext(), false);
+                        continue;
+                    }
+
+                    int sequenceNumber = session.window.firstUnacked(session.window.getBase() + 1, session.window.getNext());
+                    if (sequenceNumber == session.window.getNext()) {
+                        sequenceNumber = session.window.getBase();
+                    }
+                    session.updateWindow(session.window, sequenceNumber, true);
+                }
+                return session.window.getDelivered();
+            }
+        }, new Microbenchmark("Sender.canSendPacket", "windowSize", WINDOW_SIZES) {
+            @Override
+            public void setup(int param) {
+                reset(param);
+            }
+
+            // Each operation asks whether a packet may be sent, then sends it
+            // or ACKs the oldest packet in flight
+            @Override
+            public long run(int operations) {
+                long sent = 0;
+                for (int i = 0; i < operations; i++) {
+                    if (session.canSendPacket(session.window)) {
+                        session.window.markSent(session.window.getNext());
+                        sent++;
+                    } else {
+                        session.window.markAcked(session.window.getBase());
+                    }
+                }
+                return sent;
+            }
+        });
+    }
+
+    /**
+     * Sets up a session for an endless transfer
+     *
+     * @param size Window size
+     */
+    static void reset(int size) {
+        session = new SenderSession(new InetSocketAddress("localhost", 9876), null, size, Long.MAX_VALUE, 0, "reno",
+                new TransportMetrics(), log);
+    }
+}
@@ -0,0 +1,95 @@
+package protocol;
+
+/**
+ * How lost packets are found and recovered: what the receiver keeps when
+ * packets arrive out of order, what its ACKs report, and what the sender
+ * resends when a timer runs out. The sender picks a strategy and names it
+ * in the SYN, so both ends always follow the same one.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public abstract class ArqStrategy {
+
+    /**
+     * IDs of the strategies, as carried in the SYN
+     */
+    public static final int GO_BACK_N = 0, SELECTIVE_REPEAT = 1, SELECTIVE_ACK = 2;
+
+    /**
+     * Looks a strategy up by the name it is chosen by
+     *
+     * @param name "gbn" for Go-Back-N, "sr" for Selective Repeat or "sack"
+     * for Selective Repeat with selective ACKs
+     * @return The strategy
+     */
+    public static ArqStrategy forName(String name) {
+        if (name.equalsIgnoreCase("gbn")) {
+            return new GoBackNArq();
+        } else if (name.equalsIgnoreCase("sr")) {
+            return new SelectiveRepeatArq();
+        } else if (name.equalsIgnoreCase("sack")) {
+            return new SelectiveAckArq();
+        }
+        throw new IllegalArgumentException("Unknown ARQ strategy: " + name);
+    }
+
+    /**
+     * Looks a strategy up by the ID it is sent as
+     *
+     * @param id ID from the SYN
+     * @return The strategy
+     */
+    public static ArqStrategy forId(int id) {
+        switch (id) {
+            case GO_BACK_N:
+                return new GoBackNArq();
+            case SELECTIVE_REPEAT:
+                return new SelectiveRepeatArq();
+            case SELECTIVE_ACK:
+                return new SelectiveAckArq();
+            default:
+                throw new IllegalArgumentException("Unknown ARQ strategy: " + id);
+        }
+    }
+
+    /**
+     * @return ID the strategy is sent as
+     */
+    public abstract int getId();
+
+    /**
+     * @return Name the strategy is chosen by
+     */
+    public abstract String getName();
+
+    /**
+     * @param windowSize Size of the sender's window
+     * @return Size of the receiver's window, which bounds how many packets
+     * it holds on to past the first one missing
+     */
+    public abstract int getReceiveWindow(int windowSize);
+
+    /**
+     * Picks the blocks of received packets an ACK reports beyond its
+     * cumulative ACK
+     *
+     * @param window Receiver's window
+     * @param lastReceived Sequence number of the last packet received
+     * @param blocks Filled with start and end (exclusive) pairs
+     * @param maxBlocks Most blocks to report
+     * @return Number of blocks
+     */
+    public abstract int getAckBlocks(SlidingWindow window, int lastReceived, int[] blocks, int maxBlocks);
+
+    /**
+     * @return Whether a timeout resends every packet sent after the one
+     * that timed out as well, because the receiver threw them away
+     */
+    public abstract boolean goesBackOnTimeout();
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
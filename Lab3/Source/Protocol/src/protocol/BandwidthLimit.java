@@ -0,0 +1,42 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Bottleneck link with a drop-tail queue. Packets leave one after another
+ * at the link rate, so each waits for the ones queued ahead of it and then
+ * for its own serialization time. A packet that would have to wait longer
+ * than the queue allows is lost, as it would be at a full router buffer.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class BandwidthLimit implements Impairment {
+
+    private final long bitsPerSecond, maxQueueDelay;
+    private long departure;
+    private boolean started;
+
+    /**
+     * @param bitsPerSecond Link rate
+     * @param maxQueueDelay Longest a packet may wait in the queue, in
+     * nanoseconds
+     */
+    public BandwidthLimit(long bitsPerSecond, long maxQueueDelay) {
+        this.bitsPerSecond = bitsPerSecond;
+        this.maxQueueDelay = maxQueueDelay;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        long start = started && departure - now > 0 ? departure : now;
+        if (start - now > maxQueueDelay) {
+            fate.dropped = true;
+            return;
+        }
+
+        started = true;
+        departure = start + length * 8L * 1000000000L / bitsPerSecond;
+        fate.delay += departure - now;
+    }
+}
@@ -0,0 +1,28 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Loses every packet independently with the same probability.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class BernoulliLoss implements Impairment {
+
+    private final double probability;
+
+    /**
+     * @param probability Chance of losing each packet, 0 to 1
+     */
+    public BernoulliLoss(double probability) {
+        this.probability = probability;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        if (random.nextDouble() < probability) {
+            fate.dropped = true;
+        }
+    }
+}
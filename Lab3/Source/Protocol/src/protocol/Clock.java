@@ -0,0 +1,27 @@
+package protocol;
+
+/**
+ * Source of time for the protocol state machines. Real transfers use the
+ * system's monotonic clock; a simulation substitutes a virtual one that only
+ * moves when it is told to, so a run depends on nothing but its inputs.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public interface Clock {
+
+    /**
+     * The system's monotonic clock, {@link System#nanoTime()}
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return Current time, in nanoseconds from an arbitrary origin
+     */
+    long nanoTime();
+}
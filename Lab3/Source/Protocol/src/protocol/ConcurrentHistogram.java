@@ -0,0 +1,92 @@
+package protocol;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram that any number of threads may record into while others read
+ * it, with the same buckets as {@link Histogram}. Recording never locks or
+ * allocates; readers take a snapshot, which may be off by the values being
+ * recorded at that very moment.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class ConcurrentHistogram {
+
+    private final AtomicLongArray counts = new AtomicLongArray(Histogram.BUCKETS);
+    private final AtomicLong count = new AtomicLong(), sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE), max = new AtomicLong();
+
+    /**
+     * Records one value
+     *
+     * @param value Value to record, clamped to 0 if negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(Histogram.indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+        }
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * @return Number of values recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Copies the values recorded so far into a plain histogram, which can
+     * then be queried without racing the writers
+     *
+     * @param into Histogram to overwrite
+     * @return The histogram
+     */
+    public Histogram snapshot(Histogram into) {
+        long total = 0;
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            into.counts[i] = counts.get(i);
+            total += into.counts[i];
+        }
+
+        // The bucket counts decide the percentiles, so the total has to agree
+        // with them even if a value landed mid-copy
+        into.count = total;
+        into.sum = sum.get();
+        into.min = min.get();
+        into.max = max.get();
+        return into;
+    }
+
+    /**
+     * @return Snapshot of the values recorded so far
+     */
+    public Histogram snapshot() {
+        return snapshot(new Histogram());
+    }
+
+    /**
+     * Forgets everything recorded. Values recorded during the reset may be
+     * partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+}
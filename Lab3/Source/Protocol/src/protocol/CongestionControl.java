@@ -0,0 +1,46 @@
+package protocol;
+
+/**
+ * Decides how many packets the sender may have in flight. The sender reports
+ * every ACK, loss and timeout, and never lets the number of unACKed packets
+ * exceed {@link #getWindow()}.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public interface CongestionControl {
+
+    /**
+     * @return Congestion window, in packets
+     */
+    int getWindow();
+
+    /**
+     * Called when an ACK acknowledges new packets. The window only grows
+     * while it is what holds the sender back; otherwise nothing tests
+     * whether the path could carry more, and the window would run far past
+     * anything the sender could use, so that halving it on a loss would not
+     * slow the sender at all.
+     *
+     * @param acked Number of packets newly ACKed
+     * @param rtt Latest round trip sample, in nanoseconds, or 0 if none
+     * @param now Current time, in nanoseconds
+     * @param limited Whether the sender had a full congestion window in
+     * flight when the ACK arrived
+     */
+    void onAck(int acked, long rtt, long now, boolean limited);
+
+    /**
+     * Called when a packet is found to be lost before its timer expires
+     *
+     * @param now Current time, in nanoseconds
+     */
+    void onLoss(long now);
+
+    /**
+     * Called when the retransmission timer of the oldest packet expires
+     *
+     * @param now Current time, in nanoseconds
+     */
+    void onTimeout(long now);
+}
@@ -0,0 +1,49 @@
+package protocol;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * A received datagram: a reusable direct buffer and the address it came
+ * from. Datagrams are handed out by a {@link DatagramPool} and go back to it
+ * once they have been handled.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Datagram {
+
+    /**
+     * Contents of the datagram
+     */
+    public final ByteBuffer buffer;
+
+    /**
+     * Address the datagram came from
+     */
+    public SocketAddress address;
+
+    /**
+     * Index of the socket the datagram arrived on, when there are several
+     */
+    public int socket;
+
+    /**
+     * Time the datagram is due to be released, in nanoseconds, while an
+     * {@link ImpairmentEngine} holds it back
+     */
+    public long due;
+
+    /**
+     * Order the datagram was offered in, so datagrams due at the same time
+     * keep their order
+     */
+    public long order;
+
+    /**
+     * @param capacity Size of the buffer, in bytes
+     */
+    public Datagram(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+}
@@ -0,0 +1,56 @@
+package protocol;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of datagrams backed by direct buffers, so a receive loop can hand
+ * packets to other threads without allocating a buffer per packet. Datagrams
+ * are only created when the pool runs dry, so once traffic has warmed the
+ * pool up nothing is allocated at all. The pool may be shared between
+ * threads.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class DatagramPool {
+
+    private final BlockingQueue<Datagram> free;
+    private final int bufferSize;
+
+    /**
+     * @param bufferSize Size of each buffer, in bytes
+     * @param capacity Most datagrams the pool holds on to
+     */
+    public DatagramPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<Datagram>(capacity);
+    }
+
+    /**
+     * Takes a datagram from the pool, creating one if the pool is empty
+     *
+     * @return Datagram with a cleared buffer
+     */
+    public Datagram acquire() {
+        Datagram datagram = free.poll();
+        if (datagram == null) {
+            datagram = new Datagram(bufferSize);
+        }
+
+        datagram.buffer.clear();
+        datagram.address = null;
+        datagram.socket = 0;
+        return datagram;
+    }
+
+    /**
+     * Returns a datagram to the pool. If the pool is already full the
+     * datagram is left for the garbage collector.
+     *
+     * @param datagram Datagram that is no longer in use
+     */
+    public void release(Datagram datagram) {
+        free.offer(datagram);
+    }
+}
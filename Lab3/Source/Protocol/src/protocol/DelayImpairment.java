@@ -0,0 +1,32 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Holds every packet back by a fixed delay plus a uniformly distributed
+ * jitter. Jitter larger than the gap between packets reorders them.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class DelayImpairment implements Impairment {
+
+    private final long delay, jitter;
+
+    /**
+     * @param delay Fixed delay, in nanoseconds
+     * @param jitter Largest extra delay, in nanoseconds
+     */
+    public DelayImpairment(long delay, long jitter) {
+        this.delay = delay;
+        this.jitter = jitter;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        fate.delay += delay;
+        if (jitter > 0) {
+            fate.delay += (long) (random.nextDouble() * jitter);
+        }
+    }
+}
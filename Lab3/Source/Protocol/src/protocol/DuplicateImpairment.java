@@ -0,0 +1,28 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Delivers a random few packets twice.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class DuplicateImpairment implements Impairment {
+
+    private final double probability;
+
+    /**
+     * @param probability Chance of duplicating each packet, 0 to 1
+     */
+    public DuplicateImpairment(double probability) {
+        this.probability = probability;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        if (random.nextDouble() < probability) {
+            fate.copies++;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package protocol;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary event log. The thread that owns a log writes each event as a
+ * handful of numbers into a preallocated ring, without building strings,
+ * allocating or locking; a background thread shared by every log turns them
+ * into text and prints them. If the ring fills up, events are dropped and
+ * counted rather than holding up the protocol.
+ *
+ * Each log has exactly one writer. Threads that log in parallel each need
+ * their own.
+ *
+ * The log.level property picks what is kept: "off", "info" for the start
+ * and end of transfers, or "debug" (the default) for every packet as well.
+ * Each line starts with the time of the event, in microseconds since the log
+ * was created, as lines are printed some time after the fact.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class EventLog {
+
+    /**
+     * Levels, each keeping everything the ones before it do
+     */
+    public static final int OFF = 0, INFO = 1, DEBUG = 2;
+
+    /**
+     * Event types. Sequence numbers are printed unsigned.
+     *
+     * <pre>
+     * SYN_SENT          (no arguments)
+     * SYN_ACK_RECEIVED  (no arguments)
+     * PACKET_SENT       sequence number, window base, next, packets in flight
+     * PACKET_RESENT     sequence number, window base, next, packets in flight
+     * ACK_RECEIVED      cumulative ACK, SACK blocks, window base, next
+     * PACKET_RECEIVED   sequence number, window base, next
+     * PACKET_DROPPED    sequence number
+     * TRANSFER_DONE     (no arguments)
+     * PACKET_RECOVERED  sequence number, window base, next
+     * </pre>
+     */
+    public static final int SYN_SENT = 0, SYN_ACK_RECEIVED = 1, PACKET_SENT = 2, PACKET_RESENT = 3, ACK_RECEIVED = 4,
+            PACKET_RECEIVED = 5, PACKET_DROPPED = 6, TRANSFER_DONE = 7, PACKET_RECOVERED = 8;
+
+    private static final int[] LEVELS = {INFO, INFO, DEBUG, DEBUG, DEBUG, DEBUG, DEBUG, INFO, DEBUG};
+
+    // Longs per event: time, type and session, then two pairs of arguments
+    private static final int RECORD = 4;
+
+    // How long the drain thread sleeps when every ring is empty
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final CopyOnWriteArrayList<EventLog> logs = new CopyOnWriteArrayList<EventLog>();
+    private static Thread drainer;
+
+    private final int level, mask;
+    private final long[] ring;
+    private final long start = System.nanoTime();
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong(), dropped = new AtomicLong();
+
+    // Only touched while draining
+    private final StringBuilder text = new StringBuilder();
+    private long reportedDrops;
+
+    /**
+     * Creates a log at the level the log.level property asks for
+     *
+     * @param capacity Events the ring holds before it starts dropping,
+     * rounded up to a power of two
+     */
+    public EventLog(int capacity) {
+        this(capacity, parseLevel(System.getProperty("log.level", "debug")));
+    }
+
+    /**
+     * @param capacity Events the ring holds before it starts dropping,
+     * rounded up to a power of two
+     * @param level Most detailed level to keep
+     */
+    public EventLog(int capacity, int level) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.level = level;
+        this.mask = size - 1;
+        this.ring = new long[size * RECORD];
+        if (level > OFF) {
+            logs.add(this);
+            startDrainer();
+        }
+    }
+
+    /**
+     * @param name "off", "info" or "debug"
+     * @return The level
+     */
+    public static int parseLevel(String name) {
+        if (name.equalsIgnoreCase("off")) {
+            return OFF;
+        } else if (name.equalsIgnoreCase("info")) {
+            return INFO;
+        } else if (name.equalsIgnoreCase("debug")) {
+            return DEBUG;
+        }
+        throw new IllegalArgumentException("Unknown log level: " + name);
+    }
+
+    /**
+     * @param type Event type
+     * @return Whether events of the type are kept, so callers can skip
+     * gathering their arguments
+     */
+    public boolean isEnabled(int type) {
+        return LEVELS[type] <= level;
+    }
+
+    /**
+     * Records an event. Only the thread that owns the log may call this.
+     *
+     * @param type Event type
+     * @param session Session the event belongs to
+     * @param a First argument
+     * @param b Second argument
+     * @param c Third argument
+     * @param d Fourth argument
+     */
+    public void log(int type, int session, int a, int b, int c, int d) {
+        if (LEVELS[type] > level) {
+            return;
+        }
+
+        long h = head.get();
+        if (h - tail.get() > mask) {
+            dropped.lazySet(dropped.get() + 1);
+            return;
+        }
+
+        int i = (int) (h & mask) * RECORD;
+        ring[i] = System.nanoTime();
+        ring[i + 1] = (long) type << 32 | (session & 0xFFFFFFFFL);
+        ring[i + 2] = (long) a << 32 | (b & 0xFFFFFFFFL);
+        ring[i + 3] = (long) c << 32 | (d & 0xFFFFFFFFL);
+        // Publishes the record to the drain thread
+        head.lazySet(h + 1);
+    }
+
+    /**
+     * Records an event with fewer arguments
+     *
+     * @param type Event type
+     * @param session Session the event belongs to
+     * @param a First argument
+     */
+    public void log(int type, int session, int a) {
+        log(type, session, a, 0, 0, 0);
+    }
+
+    /**
+     * @return Number of events dropped because the ring was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Prints everything logged so far by every log, without waiting for the
+     * background thread. Call before exiting so nothing is lost.
+     */
+    public static void flush() {
+        drainAll();
+    }
+
+    private static synchronized void startDrainer() {
+        if (drainer != null) {
+            return;
+        }
+
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    if (!drainAll()) {
+                        LockSupport.parkNanos(IDLE_NANOS);
+                    }
+                }
+            }
+        }, "event-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Prints the events waiting in every ring
+     *
+     * @return Whether there was anything to print
+     */
+    private static synchronized boolean drainAll() {
+        boolean any = false;
+        for (EventLog log : logs) {
+            any |= log.drain();
+        }
+        return any;
+    }
+
+    private boolean drain() {
+        long t = tail.get(), h = head.get();
+        if (t == h && dropped.get() == reportedDrops) {
+            return false;
+        }
+
+        text.setLength(0);
+        for (; t != h; t++) {
+            int i = (int) (t & mask) * RECORD;
+            text.append('[').append((ring[i] - start) / 1000).append(" us] ");
+            format(text, (int) (ring[i + 1] >>> 32), (int) ring[i + 1], (int) (ring[i + 2] >>> 32), (int) ring[i + 2],
+                    (int) (ring[i + 3] >>> 32), (int) ring[i + 3]);
+            text.append(System.lineSeparator());
+        }
+        // Frees the slots for the writer
+        tail.lazySet(h);
+
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            text.append(String.format(Locale.ROOT, "(%d log events dropped)%n", drops - reportedDrops));
+            reportedDrops = drops;
+        }
+
+        System.out.print(text);
+        return true;
+    }
+
+    private static void format(StringBuilder out, int type, int session, int a, int b, int c, int d) {
+        switch (type) {
+            case SYN_SENT:
+                out.append("SYN is sent");
+                break;
+            case SYN_ACK_RECEIVED:
+                out.append("SYN-ACK is receieved");
+                break;
+            case PACKET_SENT:
+            case PACKET_RESENT:
+                out.append("Packet ").append(SequenceNumber.toString(a));
+                out.append(type == PACKET_SENT ? " is sent" : " has been resent");
+                window(out, b, c).append(", ").append(d).append(" in flight");
+                break;
+            case ACK_RECEIVED:
+                out.append("Ack ").append(SequenceNumber.toString(a));
+                if (b > 0) {
+                    out.append(" (").append(b).append(" SACK blocks)");
+                }
+                window(out.append(" is receieved"), c, d);
+                break;
+            case PACKET_RECEIVED:
+                session(out, session).append("Packet ").append(SequenceNumber.toString(a)).append(" is receieved");
+                window(out, b, c);
+                break;
+            case PACKET_DROPPED:
+                session(out, session).append("Packet ").append(SequenceNumber.toString(a)).append(" was dropped");
+                break;
+            case PACKET_RECOVERED:
+                session(out, session).append("Packet ").append(SequenceNumber.toString(a)).append(" is recovered from parity");
+                window(out, b, c);
+                break;
+            case TRANSFER_DONE:
+                session(out, session).append("All packets have been received.");
+                break;
+            default:
+                out.append("Event ").append(type);
+                break;
+        }
+    }
+
+    private static StringBuilder session(StringBuilder out, int session) {
+        return out.append("Session ").append(session).append(": ");
+    }
+
+    private static StringBuilder window(StringBuilder out, int base, int next) {
+        return out.append(", window [").append(SequenceNumber.toString(base)).append(", ")
+                .append(SequenceNumber.toString(next)).append(')');
+    }
+}
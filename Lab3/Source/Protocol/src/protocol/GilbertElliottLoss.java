@@ -0,0 +1,46 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Bursty loss from a two state Markov chain. The channel flips between a
+ * good state, where packets are rarely lost, and a bad state, where most
+ * are, so losses come in runs the way they do on a congested or fading link.
+ * The chain steps once per packet.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class GilbertElliottLoss implements Impairment {
+
+    private final double goodToBad, badToGood, lossGood, lossBad;
+    private boolean bad;
+
+    /**
+     * @param goodToBad Chance of moving from the good state to the bad one
+     * @param badToGood Chance of moving from the bad state to the good one
+     * @param lossGood Chance of losing a packet in the good state
+     * @param lossBad Chance of losing a packet in the bad state
+     */
+    public GilbertElliottLoss(double goodToBad, double badToGood, double lossGood, double lossBad) {
+        this.goodToBad = goodToBad;
+        this.badToGood = badToGood;
+        this.lossGood = lossGood;
+        this.lossBad = lossBad;
+    }
+
+    /**
+     * @return Whether the channel is in the bad state
+     */
+    public boolean isBad() {
+        return bad;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        bad = random.nextDouble() < (bad ? 1 - badToGood : goodToBad);
+        if (random.nextDouble() < (bad ? lossBad : lossGood)) {
+            fate.dropped = true;
+        }
+    }
+}
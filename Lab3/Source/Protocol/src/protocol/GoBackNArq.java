@@ -0,0 +1,37 @@
+package protocol;
+
+/**
+ * Go-Back-N: the receiver only takes packets in order and ACKs the last of
+ * them, so it holds nothing back. When a packet is lost everything sent
+ * after it is thrown away, and a timeout sends it all again.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class GoBackNArq extends ArqStrategy {
+
+    @Override
+    public int getId() {
+        return GO_BACK_N;
+    }
+
+    @Override
+    public String getName() {
+        return "gbn";
+    }
+
+    @Override
+    public int getReceiveWindow(int windowSize) {
+        return 1;
+    }
+
+    @Override
+    public int getAckBlocks(SlidingWindow window, int lastReceived, int[] blocks, int maxBlocks) {
+        return 0;
+    }
+
+    @Override
+    public boolean goesBackOnTimeout() {
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package protocol;
+
+/**
+ * Log-linear histogram of non-negative values, such as latencies in
+ * nanoseconds. Every power of two is split into 32 equal buckets, so any
+ * value is known to within about 3% while the whole range of a long fits in
+ * under two thousand counters. Recording is a few shifts and an increment,
+ * and never allocates.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Histogram {
+
+    static final int SUB_BITS = 5, SUB_COUNT = 1 << SUB_BITS, BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    // Left open to the package so ConcurrentHistogram can take snapshots
+    final long[] counts = new long[BUCKETS];
+    long count, sum, min = Long.MAX_VALUE, max;
+
+    /**
+     * Records one value
+     *
+     * @param value Value to record, clamped to 0 if negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return Number of values recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Mean of the values recorded, or 0 if there are none
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return Smallest value recorded, or 0 if there are none
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return Largest value recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Estimates a percentile from the buckets
+     *
+     * @param percentile Percentile to estimate, 0 to 100
+     * @return Value at the percentile, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count)), seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                // The middle of the bucket, but never outside what was seen
+                return Math.max(min, Math.min(max, lowestValue(i) + (bucketWidth(i) >> 1)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets everything recorded
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Folds another histogram's values into this one
+     *
+     * @param other Histogram to add
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    private static long lowestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_COUNT - 1;
+        return (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+    }
+
+    private static long bucketWidth(int index) {
+        return index < SUB_COUNT ? 1 : 1L << (index / SUB_COUNT - 1);
+    }
+}
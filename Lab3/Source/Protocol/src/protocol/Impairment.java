@@ -0,0 +1,27 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * One stage of network impairment, such as loss, delay or a bandwidth cap.
+ * Stages are chained by an {@link ImpairmentEngine}, each deciding a little
+ * more of what happens to a packet. Every random choice comes from the
+ * engine's seeded generator, so a run can be repeated exactly.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public interface Impairment {
+
+    /**
+     * Applies this stage to a packet. Stages are not called for packets an
+     * earlier stage has already dropped.
+     *
+     * @param fate What has been decided for the packet so far, updated in
+     * place
+     * @param length Length of the packet, in bytes
+     * @param now Time the packet was offered, in nanoseconds
+     * @param random Generator to draw from
+     */
+    void apply(PacketFate fate, int length, long now, Random random);
+}
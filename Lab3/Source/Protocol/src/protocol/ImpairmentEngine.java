@@ -0,0 +1,268 @@
+package protocol;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Emulates an unreliable network in process. Datagrams are offered to the
+ * engine instead of being sent (or handled), run through a chain of
+ * {@link Impairment} stages, and come back out of {@link #poll(long)} when
+ * they are due, minus the ones that were lost and plus any duplicates. The
+ * engine can sit on either side, in front of a socket or behind one.
+ *
+ * Chains are usually described by a spec, stages separated by commas and
+ * their arguments by colons, applied in the order given:
+ *
+ * <pre>
+ * loss:P                      Bernoulli loss
+ * burst:P:R[:BAD[:GOOD]]      Gilbert-Elliott loss, P good to bad, R bad to
+ *                             good, BAD/GOOD loss in each state (1 and 0)
+ * delay:TIME[:JITTER]         fixed delay plus uniform jitter
+ * reorder:P:TIME              hold a packet back by TIME with chance P
+ * duplicate:P                 deliver a packet twice with chance P
+ * rate:RATE[:QUEUE]           bottleneck link, drop-tail after QUEUE (50ms)
+ * </pre>
+ *
+ * Times take a unit of ns, us, ms or s, and rates one of bit, kbit, mbit or
+ * gbit (per second). For example "burst:0.01:0.3,rate:100mbit,delay:5ms:1ms".
+ *
+ * The engine is driven by one thread. All randomness comes from a single
+ * seeded generator, so the same seed and the same traffic give the same
+ * losses.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class ImpairmentEngine {
+
+    // Queue a bandwidth cap holds before it starts dropping
+    private static final long DEFAULT_QUEUE_DELAY = 50000000L;
+
+    private final List<Impairment> stages = new ArrayList<Impairment>();
+    private final PacketFate fate = new PacketFate();
+    private final Random random;
+    private final DatagramPool pool;
+    private final PriorityQueue<Datagram> held = new PriorityQueue<Datagram>(64, new Comparator<Datagram>() {
+        @Override
+        public int compare(Datagram a, Datagram b) {
+            if (a.due != b.due) {
+                return a.due - b.due < 0 ? -1 : 1;
+            }
+            return a.order < b.order ? -1 : (a.order == b.order ? 0 : 1);
+        }
+    });
+    private long offered, dropped, duplicated;
+
+    /**
+     * @param seed Seed for every random choice
+     * @param pool Pool that dropped datagrams go back to, and duplicates come
+     * from
+     */
+    public ImpairmentEngine(long seed, DatagramPool pool) {
+        this.random = new Random(seed);
+        this.pool = pool;
+    }
+
+    /**
+     * @param spec Chain of stages, as described above
+     * @param seed Seed for every random choice
+     * @param pool Pool that dropped datagrams go back to, and duplicates come
+     * from
+     */
+    public ImpairmentEngine(String spec, long seed, DatagramPool pool) {
+        this(seed, pool);
+        for (Impairment stage : parse(spec)) {
+            add(stage);
+        }
+    }
+
+    /**
+     * Adds a stage to the end of the chain
+     *
+     * @param stage Stage to add
+     * @return This engine
+     */
+    public ImpairmentEngine add(Impairment stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * Runs a datagram through the chain. The engine takes the datagram over:
+     * it goes back to the pool if it is lost, and otherwise comes back out of
+     * {@link #poll(long)}.
+     *
+     * @param datagram Datagram, flipped and ready to read
+     * @param now Current time, in nanoseconds
+     */
+    public void offer(Datagram datagram, long now) {
+        offered++;
+        fate.reset();
+        for (int i = 0; i < stages.size() && !fate.dropped; i++) {
+            stages.get(i).apply(fate, datagram.buffer.remaining(), now, random);
+        }
+
+        if (fate.dropped) {
+            dropped++;
+            pool.release(datagram);
+            return;
+        }
+
+        for (int i = 1; i < fate.copies; i++) {
+            Datagram copy = pool.acquire();
+            copy.buffer.put(datagram.buffer.duplicate()).flip();
+            copy.address = datagram.address;
+            copy.socket = datagram.socket;
+            hold(copy, now + fate.delay);
+            duplicated++;
+        }
+        hold(datagram, now + fate.delay);
+    }
+
+    /**
+     * Takes the next datagram that is due. The caller owns it from then on,
+     * and should return it to the pool when done.
+     *
+     * @param now Current time, in nanoseconds
+     * @return Datagram that is due, or null if there is none
+     */
+    public Datagram poll(long now) {
+        Datagram next = held.peek();
+        if (next == null || next.due - now > 0) {
+            return null;
+        }
+        return held.poll();
+    }
+
+    /**
+     * @return Whether any datagrams are being held back
+     */
+    public boolean hasPending() {
+        return !held.isEmpty();
+    }
+
+    /**
+     * @param now Current time, in nanoseconds
+     * @return Nanoseconds until the next datagram is due, 0 if one already
+     * is, or Long.MAX_VALUE if none are held
+     */
+    public long timeUntilNext(long now) {
+        Datagram next = held.peek();
+        return next == null ? Long.MAX_VALUE : Math.max(0, next.due - now);
+    }
+
+    /**
+     * @return Number of datagrams offered
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return Number of datagrams lost
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return Number of extra copies delivered
+     */
+    public long getDuplicated() {
+        return duplicated;
+    }
+
+    /**
+     * Formats the engine's counters to be readable by the console
+     *
+     * @return Formatted string
+     */
+    @Override
+    public String toString() {
+        return "offered " + offered + ", dropped " + dropped + ", duplicated " + duplicated;
+    }
+
+    private void hold(Datagram datagram, long due) {
+        datagram.due = due;
+        datagram.order = offered;
+        held.add(datagram);
+    }
+
+    /**
+     * Builds the chain of stages a spec describes
+     *
+     * @param spec Chain of stages, as described above
+     * @return Stages, in order
+     */
+    public static List<Impairment> parse(String spec) {
+        List<Impairment> chain = new ArrayList<Impairment>();
+
+        for (String stage : spec.split(",")) {
+            String[] args = stage.trim().split(":");
+            String name = args[0].toLowerCase();
+            try {
+                if (name.isEmpty()) {
+                    continue;
+                } else if (name.equals("loss")) {
+                    chain.add(new BernoulliLoss(Double.parseDouble(args[1])));
+                } else if (name.equals("burst")) {
+                    chain.add(new GilbertElliottLoss(Double.parseDouble(args[1]), Double.parseDouble(args[2]),
+                            args.length > 4 ? Double.parseDouble(args[4]) : 0,
+                            args.length > 3 ? Double.parseDouble(args[3]) : 1));
+                } else if (name.equals("delay")) {
+                    chain.add(new DelayImpairment(parseTime(args[1]), args.length > 2 ? parseTime(args[2]) : 0));
+                } else if (name.equals("reorder")) {
+                    chain.add(new ReorderImpairment(Double.parseDouble(args[1]), parseTime(args[2])));
+                } else if (name.equals("duplicate")) {
+                    chain.add(new DuplicateImpairment(Double.parseDouble(args[1])));
+                } else if (name.equals("rate")) {
+                    chain.add(new BandwidthLimit(parseRate(args[1]),
+                            args.length > 2 ? parseTime(args[2]) : DEFAULT_QUEUE_DELAY));
+                } else {
+                    throw new IllegalArgumentException("Unknown impairment: " + stage);
+                }
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                throw new IllegalArgumentException("Missing arguments for impairment: " + stage);
+            }
+        }
+
+        return chain;
+    }
+
+    /**
+     * @param time Time with a unit of ns, us, ms or s
+     * @return Time in nanoseconds
+     */
+    public static long parseTime(String time) {
+        String value = time.trim().toLowerCase();
+        String[] units = {"ns", "us", "ms", "s"};
+        long[] scales = {1L, 1000L, 1000000L, 1000000000L};
+
+        for (int i = 0; i < units.length; i++) {
+            if (value.endsWith(units[i])) {
+                return (long) (Double.parseDouble(value.substring(0, value.length() - units[i].length())) * scales[i]);
+            }
+        }
+        throw new IllegalArgumentException("Time needs a unit of ns, us, ms or s: " + time);
+    }
+
+    /**
+     * @param rate Rate with a unit of bit, kbit, mbit or gbit per second
+     * @return Rate in bits per second
+     */
+    public static long parseRate(String rate) {
+        String value = rate.trim().toLowerCase();
+        String[] units = {"kbit", "mbit", "gbit", "bit"};
+        long[] scales = {1000L, 1000000L, 1000000000L, 1L};
+
+        for (int i = 0; i < units.length; i++) {
+            if (value.endsWith(units[i])) {
+                return (long) (Double.parseDouble(value.substring(0, value.length() - units[i].length())) * scales[i]);
+            }
+        }
+        throw new IllegalArgumentException("Rate needs a unit of bit, kbit, mbit or gbit: " + rate);
+    }
+}
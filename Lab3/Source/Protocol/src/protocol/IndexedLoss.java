@@ -0,0 +1,57 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Loses a fixed number of packets, chosen at random from the first few
+ * offered. Each chosen packet is lost once, so a transfer always finishes
+ * with exactly that many losses to recover from.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class IndexedLoss implements Impairment {
+
+    private final int count;
+    private final long range;
+    private long[] indices;
+    private long offered;
+
+    /**
+     * @param count Number of packets to lose
+     * @param range Number of packets, from the first, to choose from
+     */
+    public IndexedLoss(int count, long range) {
+        this.count = (int) Math.max(0, Math.min(count, range));
+        this.range = range;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        // Choose on first use, so the choice comes from the engine's generator
+        if (indices == null) {
+            indices = new long[count];
+            for (int i = 0; i < count; i++) {
+                long index;
+                do {
+                    index = (long) (random.nextDouble() * range);
+                } while (contains(i, index));
+                indices[i] = index;
+            }
+        }
+
+        long index = offered++;
+        if (contains(count, index)) {
+            fate.dropped = true;
+        }
+    }
+
+    private boolean contains(int length, long index) {
+        for (int i = 0; i < length; i++) {
+            if (indices[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
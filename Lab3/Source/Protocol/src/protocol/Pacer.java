@@ -0,0 +1,94 @@
+package protocol;
+
+/**
+ * Spreads a window of packets over a round trip instead of sending it in one
+ * burst. A token bucket holds up to burst packets and gains one every
+ * interval; rather than counting tokens, it keeps the time at which the
+ * bucket next holds a token, so the rate has nanosecond resolution however
+ * fast it is.
+ *
+ * The rate follows the window: window packets per round trip, times a gain
+ * above 1 so the pacer never holds the sender below what the ACKs allow and
+ * slow start can still double the window every round trip.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Pacer {
+
+    private final double gain;
+    private final int burst;
+
+    // Nanoseconds between packets, 0 while unpaced, and when the bucket next
+    // holds a token
+    private long interval, next;
+    private boolean started;
+
+    /**
+     * @param gain Packets sent per round trip, as a multiple of the window
+     * @param burst Packets that may go back to back after an idle spell
+     */
+    public Pacer(double gain, int burst) {
+        if (gain <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Bad pacing: gain " + gain + ", burst " + burst);
+        }
+        this.gain = gain;
+        this.burst = burst;
+    }
+
+    /**
+     * Sets the rate from the window and the round trip time. Without a round
+     * trip sample there is nothing to spread over, so packets go unpaced.
+     *
+     * @param window Packets that may be in flight
+     * @param rtt Smoothed round trip time, in nanoseconds, or 0 if unknown
+     */
+    public void setRate(int window, long rtt) {
+        interval = window > 0 && rtt > 0 ? (long) (rtt / (gain * window)) : 0;
+    }
+
+    /**
+     * Takes a token if the bucket has one
+     *
+     * @param now Current time, in nanoseconds
+     * @return Whether a packet may be sent now
+     */
+    public boolean tryAcquire(long now) {
+        if (interval == 0) {
+            return true;
+        }
+
+        // Tokens stop piling up once the bucket is full
+        long full = now - (burst - 1) * interval;
+        if (!started || next - full < 0) {
+            next = full;
+            started = true;
+        }
+        if (next - now > 0) {
+            return false;
+        }
+
+        next += interval;
+        return true;
+    }
+
+    /**
+     * @param now Current time, in nanoseconds
+     * @return Nanoseconds until the bucket holds a token, 0 if it does now
+     */
+    public long timeUntilNext(long now) {
+        return interval == 0 || !started ? 0 : Math.max(0, next - now);
+    }
+
+    /**
+     * @return Nanoseconds between packets, or 0 while unpaced
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "gain=" + gain + " burst=" + burst + " interval_ns=" + interval;
+    }
+}
@@ -0,0 +1,529 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Wire format shared by the sender and the receiver.
+ *
+ * Every packet starts with a version byte, a flags byte holding the packet
+ * type and the session ID, followed by the fields of that type as unsigned
+ * varints, and then a CRC32 of everything before it. Data packets carry
+ * their segment of file data after the checksum.
+ *
+ * <pre>
+ * SYN      window size, packets to drop, packet count, segment size, FEC
+ *          group size (0 for none), ARQ strategy, stripe index and number
+ *          of stripes (0 and 1 unless striped, see Stripes)
+ * SYN-ACK  (nothing)
+ * REJECT   (nothing); the receiver will not open the session the SYN asks
+ *          for, such as one with a larger segment than it takes
+ * DATA     sequence number; the ACK_NOW flag asks for an ACK at once
+ * ACK      cumulative ACK, advertised window, microseconds the ACK was
+ *          held back after the last packet arrived, block count, then per
+ *          block the gap since the previous block (or the cumulative ACK)
+ *          and its length
+ * PARITY   first sequence number of the group, packets in the group,
+ *          length of the group's last segment; the XOR of the group's
+ *          segments follows the checksum
+ * </pre>
+ *
+ * Sequence numbers are those of the whole transfer, even in the packets of
+ * one stripe of it (see Stripes).
+ *
+ * The session parameters only travel in the SYN; after the handshake a data
+ * header is 11 to 15 bytes.
+ *
+ * A codec encodes into, and decodes out of, buffers its caller owns and
+ * reuses, so nothing is allocated per packet. The fields of the last packet
+ * decoded are held in the codec, so each thread needs its own.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class PacketCodec {
+
+    /**
+     * Magic in the high nibble of the version byte, wire format version in
+     * the low nibble
+     */
+    public static final int MAGIC = 0xA0, VERSION = 7;
+
+    /**
+     * Packet types, in the low bits of the flags byte
+     */
+    public static final int DATA = 0, ACK = 1, SYN = 2, SYN_ACK = 3, PARITY = 4, REJECT = 5;
+
+    /**
+     * Flag of a data packet after which the sender's window is full, so
+     * holding its ACK back would only stall the sender
+     */
+    public static final int ACK_NOW = 0x08;
+
+    /**
+     * Most selective ACK blocks that fit in one ACK
+     */
+    public static final int MAX_SACK_BLOCKS = 16;
+
+    // Version, flags and session ID; then the checksum
+    private static final int FIXED_SIZE = 6, CHECKSUM_SIZE = 4;
+    private static final int TYPE_MASK = 0x07;
+    private static final int MAX_INT_VARINT = 5, MAX_LONG_VARINT = 10;
+
+    /**
+     * Smallest valid packet
+     */
+    public static final int MIN_PACKET_SIZE = FIXED_SIZE + CHECKSUM_SIZE;
+
+    /**
+     * Largest header in front of file data, that of a parity packet
+     */
+    public static final int MAX_HEADER_SIZE = FIXED_SIZE + 3 * MAX_INT_VARINT + CHECKSUM_SIZE;
+
+    /**
+     * Largest segment of file data that still fits in one UDP datagram
+     */
+    public static final int MAX_SEGMENT_SIZE = 65507 - MAX_HEADER_SIZE;
+
+    /**
+     * Largest possible ACK
+     */
+    public static final int MAX_ACK_SIZE = FIXED_SIZE + 4 * MAX_INT_VARINT + MAX_SACK_BLOCKS * 2 * MAX_INT_VARINT
+            + CHECKSUM_SIZE;
+
+    /**
+     * Largest possible SYN
+     */
+    public static final int MAX_SYN_SIZE = FIXED_SIZE + 7 * MAX_INT_VARINT + MAX_LONG_VARINT + CHECKSUM_SIZE;
+
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[Math.max(MAX_ACK_SIZE, MAX_SYN_SIZE)];
+    private int length;
+
+    // Fields of the last packet decoded
+    private int type, sessionId, sequenceNumber, windowSize, packetsToDrop, segmentSize, fecGroup, arq, blocks, payloadOffset;
+    private int advertisedWindow, stripe, stripes;
+    private long ackDelay;
+    private boolean ackNow;
+    private int groupSize, lastLength;
+    private long packetCount;
+    private final int[] sackBlocks = new int[2 * MAX_SACK_BLOCKS];
+
+    /**
+     * Reads the session ID of a packet without decoding it, to route it
+     *
+     * @param packet Received packet, at least MIN_PACKET_SIZE bytes
+     * @return Session the packet claims to belong to
+     */
+    public static int sessionId(ByteBuffer packet) {
+        return packet.getInt(2);
+    }
+
+    /**
+     * Writes a SYN, which opens a session with its parameters
+     *
+     * @param buffer Buffer to write into, at least MAX_SYN_SIZE bytes
+     * @param sessionId Session to open
+     * @param windowSize Size of the sender's window
+     * @param packetsToDrop Number of packets to artificially drop
+     * @param packetCount Number of packets in the transfer, across every
+     * stripe
+     * @param segmentSize Bytes of file data per packet, or 0 if there is none
+     * @param fecGroup Data packets per parity packet, or 0 for no parity
+     * @param arq ID of the ARQ strategy, see {@link ArqStrategy}
+     * @param stripe Index of the stripe this session carries
+     * @param stripes Number of stripes in the transfer, 1 if not striped
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeSyn(ByteBuffer buffer, int sessionId, int windowSize, int packetsToDrop, long packetCount,
+            int segmentSize, int fecGroup, int arq, int stripe, int stripes) {
+        begin(SYN, sessionId);
+        putVarint(windowSize);
+        putVarint(packetsToDrop);
+        putVarint(packetCount);
+        putVarint(segmentSize);
+        putVarint(fecGroup);
+        putVarint(arq);
+        putVarint(stripe);
+        putVarint(stripes);
+        return finish(buffer);
+    }
+
+    /**
+     * Writes a SYN-ACK, which accepts a session
+     *
+     * @param buffer Buffer to write into
+     * @param sessionId Session being accepted
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeSynAck(ByteBuffer buffer, int sessionId) {
+        begin(SYN_ACK, sessionId);
+        return finish(buffer);
+    }
+
+    /**
+     * Writes a REJECT, which refuses a session
+     *
+     * @param buffer Buffer to write into, at least MIN_PACKET_SIZE bytes
+     * @param sessionId Session being refused
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeReject(ByteBuffer buffer, int sessionId) {
+        begin(REJECT, sessionId);
+        return finish(buffer);
+    }
+
+    /**
+     * Writes a data packet header. The file data, if any, follows it.
+     *
+     * @param buffer Buffer to write into, at least MAX_HEADER_SIZE bytes
+     * @param sessionId Session the packet belongs to
+     * @param sequenceNumber Sequence number of the packet
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeData(ByteBuffer buffer, int sessionId, int sequenceNumber) {
+        return encodeData(buffer, sessionId, sequenceNumber, false);
+    }
+
+    /**
+     * Writes a data packet header. The file data, if any, follows it.
+     *
+     * @param buffer Buffer to write into, at least MAX_HEADER_SIZE bytes
+     * @param sessionId Session the packet belongs to
+     * @param sequenceNumber Sequence number of the packet
+     * @param ackNow Whether the receiver should ACK the packet at once
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeData(ByteBuffer buffer, int sessionId, int sequenceNumber, boolean ackNow) {
+        begin(ackNow ? DATA | ACK_NOW : DATA, sessionId);
+        putVarint(sequenceNumber);
+        return finish(buffer);
+    }
+
+    /**
+     * Writes a parity packet header. The XOR of the group's segments, each
+     * padded with zeros to the longest, follows it.
+     *
+     * @param buffer Buffer to write into, at least MAX_HEADER_SIZE bytes
+     * @param sessionId Session the packet belongs to
+     * @param firstSequence Sequence number of the first packet in the group
+     * @param groupSize Number of packets in the group
+     * @param lastLength Length of the last segment in the group
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeParity(ByteBuffer buffer, int sessionId, int firstSequence, int groupSize, int lastLength) {
+        begin(PARITY, sessionId);
+        putVarint(firstSequence);
+        putVarint(groupSize);
+        putVarint(lastLength);
+        return finish(buffer);
+    }
+
+    /**
+     * Writes an ACK. Blocks are encoded relative to the one before them, so
+     * the usual short distances take a byte or two.
+     *
+     * @param buffer Buffer to write into, at least MAX_ACK_SIZE bytes
+     * @param sessionId Session the packet belongs to
+     * @param cumulativeAck Next sequence number expected
+     * @param advertisedWindow Packets the receiver has room for
+     * @param ackDelay Nanoseconds the ACK was held back after the last
+     * packet arrived, sent in microseconds
+     * @param sackBlocks Start/end pairs of blocks received past the
+     * cumulative ACK, in order
+     * @param blocks Number of blocks, at most MAX_SACK_BLOCKS
+     * @return The buffer, ready to be sent
+     */
+    public ByteBuffer encodeAck(ByteBuffer buffer, int sessionId, int cumulativeAck, int advertisedWindow,
+            long ackDelay, int[] sackBlocks, int blocks) {
+        begin(ACK, sessionId);
+        putVarint(cumulativeAck);
+        putVarint(advertisedWindow);
+        putVarint(Math.max(0, Math.min(ackDelay / 1000, Integer.MAX_VALUE)));
+        putVarint(blocks);
+
+        int previous = cumulativeAck;
+        for (int i = 0; i < blocks; i++) {
+            putVarint(SequenceNumber.distance(previous, sackBlocks[2 * i]));
+            putVarint(SequenceNumber.distance(sackBlocks[2 * i], sackBlocks[2 * i + 1]));
+            previous = sackBlocks[2 * i + 1];
+        }
+
+        return finish(buffer);
+    }
+
+    /**
+     * Decodes a received packet into this codec's fields. The buffer is left
+     * as it was.
+     *
+     * @param packet Received packet, flipped
+     * @return Whether the packet is a well formed packet of our version with
+     * a valid checksum
+     */
+    public boolean decode(ByteBuffer packet) {
+        int available = Math.min(packet.remaining(), scratch.length);
+        if (available < MIN_PACKET_SIZE) {
+            return false;
+        }
+
+        int start = packet.position();
+        packet.get(scratch, 0, available);
+        packet.position(start);
+
+        if ((scratch[0] & 0xFF) != (MAGIC | VERSION)) {
+            return false;
+        }
+        type = scratch[1] & TYPE_MASK;
+        sessionId = ((scratch[2] & 0xFF) << 24) | ((scratch[3] & 0xFF) << 16) | ((scratch[4] & 0xFF) << 8) | (scratch[5] & 0xFF);
+
+        // A varint running past the end shows up as a bad length below
+        length = FIXED_SIZE;
+        switch (type) {
+            case SYN:
+                windowSize = (int) getVarint(available);
+                packetsToDrop = (int) getVarint(available);
+                packetCount = getVarint(available);
+                segmentSize = (int) getVarint(available);
+                fecGroup = (int) getVarint(available);
+                arq = (int) getVarint(available);
+                stripe = (int) getVarint(available);
+                stripes = (int) getVarint(available);
+                break;
+            case DATA:
+                sequenceNumber = (int) getVarint(available);
+                ackNow = (scratch[1] & ACK_NOW) != 0;
+                break;
+            case PARITY:
+                sequenceNumber = (int) getVarint(available);
+                groupSize = (int) getVarint(available);
+                lastLength = (int) getVarint(available);
+                break;
+            case ACK:
+                sequenceNumber = (int) getVarint(available);
+                advertisedWindow = (int) Math.min(getVarint(available), Integer.MAX_VALUE);
+                ackDelay = Math.min(getVarint(available), Integer.MAX_VALUE) * 1000;
+                blocks = (int) Math.min(getVarint(available), MAX_SACK_BLOCKS);
+                int previous = sequenceNumber;
+                for (int i = 0; i < blocks; i++) {
+                    sackBlocks[2 * i] = previous + (int) getVarint(available);
+                    sackBlocks[2 * i + 1] = sackBlocks[2 * i] + (int) getVarint(available);
+                    previous = sackBlocks[2 * i + 1];
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (length + CHECKSUM_SIZE > available) {
+            return false;
+        }
+
+        crc.reset();
+        crc.update(scratch, 0, length);
+        payloadOffset = start + length + CHECKSUM_SIZE;
+        return (int) crc.getValue() == packet.getInt(start + length);
+    }
+
+    /**
+     * @return Type of the last packet decoded
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return Session of the last packet decoded
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return Sequence number of the last data packet decoded, or the first
+     * in the group of the last parity packet decoded
+     */
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return Whether the last data packet decoded asks for an ACK at once
+     */
+    public boolean isAckRequested() {
+        return ackNow;
+    }
+
+    /**
+     * @return Next sequence number expected, from the last ACK decoded
+     */
+    public int getCumulativeAck() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return Packets the receiver had room for, from the last ACK decoded
+     */
+    public int getAdvertisedWindow() {
+        return advertisedWindow;
+    }
+
+    /**
+     * @return Nanoseconds the receiver held the last ACK decoded back after
+     * the last packet arrived
+     */
+    public long getAckDelay() {
+        return ackDelay;
+    }
+
+    /**
+     * @return Number of selective ACK blocks in the last ACK decoded
+     */
+    public int getSackBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @param block Index of the block
+     * @return First sequence number in the block
+     */
+    public int getSackStart(int block) {
+        return sackBlocks[2 * block];
+    }
+
+    /**
+     * @param block Index of the block
+     * @return Sequence number just past the block
+     */
+    public int getSackEnd(int block) {
+        return sackBlocks[2 * block + 1];
+    }
+
+    /**
+     * @return Window size from the last SYN decoded
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return Number of packets to drop, from the last SYN decoded
+     */
+    public int getPacketsToDrop() {
+        return packetsToDrop;
+    }
+
+    /**
+     * @return Number of packets in the transfer, from the last SYN decoded
+     */
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * @return Bytes of file data per packet, from the last SYN decoded
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return Data packets per parity packet, from the last SYN decoded
+     */
+    public int getFecGroup() {
+        return fecGroup;
+    }
+
+    /**
+     * @return ID of the ARQ strategy, from the last SYN decoded
+     */
+    public int getArq() {
+        return arq;
+    }
+
+    /**
+     * @return Index of the stripe, from the last SYN decoded
+     */
+    public int getStripe() {
+        return stripe;
+    }
+
+    /**
+     * @return Number of stripes in the transfer, from the last SYN decoded
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * @return Number of packets covered by the last parity packet decoded
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * @return Length of the last segment covered by the last parity packet
+     * decoded
+     */
+    public int getLastLength() {
+        return lastLength;
+    }
+
+    /**
+     * @return Position of the file data in the last data or parity packet
+     * decoded
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    private void begin(int packetType, int id) {
+        scratch[0] = (byte) (MAGIC | VERSION);
+        scratch[1] = (byte) packetType;
+        scratch[2] = (byte) (id >>> 24);
+        scratch[3] = (byte) (id >>> 16);
+        scratch[4] = (byte) (id >>> 8);
+        scratch[5] = (byte) id;
+        length = FIXED_SIZE;
+    }
+
+    private ByteBuffer finish(ByteBuffer buffer) {
+        crc.reset();
+        crc.update(scratch, 0, length);
+
+        buffer.clear();
+        buffer.put(scratch, 0, length).putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    // Sequence numbers and counts are unsigned
+    private void putVarint(int value) {
+        putVarint(value & 0xFFFFFFFFL);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[length++] = (byte) value;
+    }
+
+    private long getVarint(int limit) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (length >= limit) {
+                // Forces the length check to fail
+                length = limit;
+                return 0;
+            }
+            byte b = scratch[length++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,35 @@
+package protocol;
+
+/**
+ * What the impairment stages have decided for one packet: whether it is
+ * lost, how long it is held back and how many copies get through.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class PacketFate {
+
+    /**
+     * Whether the packet is lost
+     */
+    public boolean dropped;
+
+    /**
+     * How long the packet is held back, in nanoseconds
+     */
+    public long delay;
+
+    /**
+     * Number of copies delivered, if it is not lost
+     */
+    public int copies;
+
+    /**
+     * Resets the fate to delivering one copy straight away
+     */
+    public void reset() {
+        dropped = false;
+        delay = 0;
+        copies = 1;
+    }
+}
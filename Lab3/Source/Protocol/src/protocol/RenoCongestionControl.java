@@ -0,0 +1,65 @@
+package protocol;
+
+/**
+ * Reno style congestion control: slow start up to the threshold, then
+ * additive increase of one packet per round trip, halving the window on loss
+ * and falling back to one packet on a timeout.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class RenoCongestionControl implements CongestionControl {
+
+    /**
+     * Window at the start of a transfer (RFC 6928)
+     */
+    public static final int INITIAL_WINDOW = 10;
+
+    protected int cwnd = INITIAL_WINDOW, ssthresh = Integer.MAX_VALUE;
+    private int ackedSinceIncrease;
+
+    @Override
+    public int getWindow() {
+        return cwnd;
+    }
+
+    /**
+     * @return Slow start threshold, in packets
+     */
+    public int getSsthresh() {
+        return ssthresh;
+    }
+
+    @Override
+    public void onAck(int acked, long rtt, long now, boolean limited) {
+        if (!limited) {
+            return;
+        }
+        if (cwnd < ssthresh) {
+            // Slow start: one more packet per packet ACKed
+            cwnd += Math.min(acked, ssthresh - cwnd);
+            return;
+        }
+
+        // Congestion avoidance: one more packet per window ACKed
+        ackedSinceIncrease += acked;
+        if (ackedSinceIncrease >= cwnd) {
+            ackedSinceIncrease -= cwnd;
+            cwnd++;
+        }
+    }
+
+    @Override
+    public void onLoss(long now) {
+        ssthresh = Math.max(cwnd / 2, 2);
+        cwnd = ssthresh;
+        ackedSinceIncrease = 0;
+    }
+
+    @Override
+    public void onTimeout(long now) {
+        ssthresh = Math.max(cwnd / 2, 2);
+        cwnd = 1;
+        ackedSinceIncrease = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package protocol;
+
+import java.util.Random;
+
+/**
+ * Reorders packets by holding a random few of them back, so the packets
+ * behind them overtake them.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class ReorderImpairment implements Impairment {
+
+    private final double probability;
+    private final long holdBack;
+
+    /**
+     * @param probability Chance of holding each packet back, 0 to 1
+     * @param holdBack How long a held packet is delayed, in nanoseconds
+     */
+    public ReorderImpairment(double probability, long holdBack) {
+        this.probability = probability;
+        this.holdBack = holdBack;
+    }
+
+    @Override
+    public void apply(PacketFate fate, int length, long now, Random random) {
+        if (random.nextDouble() < probability) {
+            fate.delay += holdBack;
+        }
+    }
+}
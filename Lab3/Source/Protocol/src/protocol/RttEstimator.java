@@ -0,0 +1,122 @@
+package protocol;
+
+/**
+ * Retransmission timeout estimator following RFC 6298. Round trip samples are
+ * folded into a smoothed RTT and RTT variance, and the timeout is doubled on
+ * every expiry until a fresh sample arrives. Samples from retransmitted
+ * packets are ambiguous and must not be fed in (Karn's rule).
+ *
+ * The receiver may hold an ACK back for up to MAX_ACK_DELAY, so that is
+ * added on top of the variance, as QUIC does (RFC 9002); otherwise a timer
+ * can run out on a packet whose ACK is merely being held.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class RttEstimator {
+
+    /**
+     * Timeout used before the first sample, in nanoseconds
+     */
+    public static final long INITIAL_RTO = 200000000L;
+
+    /**
+     * Longest a receiver holds back an ACK, in nanoseconds
+     */
+    public static final long MAX_ACK_DELAY = 200000L;
+
+    /**
+     * Bounds on the timeout, in nanoseconds. The lower bound is far below the
+     * one second RFC 6298 asks for, since we mostly run over loopback or a LAN,
+     * but leaves room for the ACK delay and for the threads at either end
+     * not being scheduled at once.
+     */
+    public static final long MIN_RTO = 50000000L, MAX_RTO = 60000000000L;
+
+    // Clock granularity, the least the variance term may add
+    private static final long GRANULARITY = 1000000L;
+
+    // Gains from RFC 6298, as right shifts: alpha = 1/8, beta = 1/4
+    private static final int ALPHA_SHIFT = 3, BETA_SHIFT = 2;
+
+    private long srtt, rttvar, latest, rto = INITIAL_RTO;
+    private int backoff;
+
+    /**
+     * Feeds a round trip sample into the estimator
+     *
+     * @param rtt Round trip time of a packet that was only sent once, in
+     * nanoseconds
+     */
+    public void sample(long rtt) {
+        if (rtt < 0) {
+            return;
+        }
+
+        latest = rtt;
+
+        if (srtt == 0) {
+            srtt = rtt;
+            rttvar = rtt >> 1;
+        } else {
+            long error = rtt - srtt;
+            rttvar += (Math.abs(error) - rttvar) >> BETA_SHIFT;
+            srtt += error >> ALPHA_SHIFT;
+        }
+
+        backoff = 0;
+        rto = clamp(srtt + Math.max(4 * rttvar, GRANULARITY) + MAX_ACK_DELAY);
+    }
+
+    /**
+     * Doubles the timeout after a retransmission timer expires
+     */
+    public void backoff() {
+        if (rto < MAX_RTO) {
+            backoff++;
+            rto = clamp(rto << 1);
+        }
+    }
+
+    /**
+     * @return Current retransmission timeout, in nanoseconds
+     */
+    public long getRto() {
+        return rto;
+    }
+
+    /**
+     * @return Smoothed round trip time, in nanoseconds, or 0 before the first
+     * sample
+     */
+    public long getSrtt() {
+        return srtt;
+    }
+
+    /**
+     * @return Most recent round trip sample, in nanoseconds, or 0 before the
+     * first sample
+     */
+    public long getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return Round trip time variance, in nanoseconds
+     */
+    public long getRttvar() {
+        return rttvar;
+    }
+
+    /**
+     * @return Number of times the timeout has been doubled since the last
+     * sample
+     */
+    public int getBackoff() {
+        return backoff;
+    }
+
+    private static long clamp(long rto) {
+        return Math.max(MIN_RTO, Math.min(MAX_RTO, rto));
+    }
+}
@@ -0,0 +1,37 @@
+package protocol;
+
+/**
+ * Selective Repeat with selective ACKs: every ACK reports all the blocks the
+ * receiver holds past the first hole, so a lost ACK costs nothing and the
+ * sender sees every hole at once.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SelectiveAckArq extends ArqStrategy {
+
+    @Override
+    public int getId() {
+        return SELECTIVE_ACK;
+    }
+
+    @Override
+    public String getName() {
+        return "sack";
+    }
+
+    @Override
+    public int getReceiveWindow(int windowSize) {
+        return windowSize;
+    }
+
+    @Override
+    public int getAckBlocks(SlidingWindow window, int lastReceived, int[] blocks, int maxBlocks) {
+        return window.ackedRanges(blocks, maxBlocks);
+    }
+
+    @Override
+    public boolean goesBackOnTimeout() {
+        return false;
+    }
+}
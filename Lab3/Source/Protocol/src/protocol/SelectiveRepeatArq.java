@@ -0,0 +1,44 @@
+package protocol;
+
+/**
+ * Selective Repeat: the receiver keeps packets that arrive out of order and
+ * ACKs each one on its own, alongside the cumulative ACK, so the sender only
+ * resends what was really lost.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SelectiveRepeatArq extends ArqStrategy {
+
+    @Override
+    public int getId() {
+        return SELECTIVE_REPEAT;
+    }
+
+    @Override
+    public String getName() {
+        return "sr";
+    }
+
+    @Override
+    public int getReceiveWindow(int windowSize) {
+        return windowSize;
+    }
+
+    @Override
+    public int getAckBlocks(SlidingWindow window, int lastReceived, int[] blocks, int maxBlocks) {
+        // Packets up to the cumulative ACK need no block of their own
+        if (maxBlocks < 1 || !window.contains(lastReceived) || !window.isAcked(lastReceived)) {
+            return 0;
+        }
+
+        blocks[0] = lastReceived;
+        blocks[1] = lastReceived + 1;
+        return 1;
+    }
+
+    @Override
+    public boolean goesBackOnTimeout() {
+        return false;
+    }
+}
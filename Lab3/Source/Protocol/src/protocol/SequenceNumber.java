@@ -0,0 +1,63 @@
+package protocol;
+
+/**
+ * Serial number arithmetic over the 32-bit sequence space (RFC 1982). Sequence
+ * numbers wrap from 0xFFFFFFFF back to 0, so they must be compared by the
+ * signed distance between them rather than by value.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public final class SequenceNumber {
+
+    private SequenceNumber() {
+    }
+
+    /**
+     * Signed distance from one sequence number to another
+     *
+     * @param from Starting sequence number
+     * @param to Ending sequence number
+     * @return Number of steps from 'from' to 'to', negative if 'to' comes first
+     */
+    public static int distance(int from, int to) {
+        return to - from;
+    }
+
+    /**
+     * @param a First sequence number
+     * @param b Second sequence number
+     * @return Whether a comes before b
+     */
+    public static boolean lessThan(int a, int b) {
+        return a - b < 0;
+    }
+
+    /**
+     * @param a First sequence number
+     * @param b Second sequence number
+     * @return Whether a comes before or is equal to b
+     */
+    public static boolean lessThanOrEqual(int a, int b) {
+        return a - b <= 0;
+    }
+
+    /**
+     * @param a First sequence number
+     * @param b Second sequence number
+     * @return The later of the two sequence numbers
+     */
+    public static int max(int a, int b) {
+        return lessThan(a, b) ? b : a;
+    }
+
+    /**
+     * Formats a sequence number as the unsigned value that goes on the wire
+     *
+     * @param sequenceNumber Sequence number to format
+     * @return Formatted string
+     */
+    public static String toString(int sequenceNumber) {
+        return String.valueOf(sequenceNumber & 0xFFFFFFFFL);
+    }
+}
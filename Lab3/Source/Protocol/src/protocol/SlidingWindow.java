@@ -0,0 +1,393 @@
+package protocol;
+
+/**
+ * Selective-repeat window over a run of sequence numbers. Slot state is kept
+ * in a power-of-two ring addressed by sequence number, with one bitmap for
+ * sent slots and one for acknowledged (or received) slots, so marking a slot
+ * and sliding the window never allocate or scan the whole window.
+ *
+ * Sequence numbers use the full 32-bit space and wrap around, so they are
+ * only ever compared relative to the start of the window. The transfer
+ * itself may be longer than the sequence space.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SlidingWindow {
+
+    private final int size, mask;
+    private final long limit;
+    private final long[] sent, acked;
+    private int base, next, inFlight;
+    private long delivered;
+
+    /**
+     * @param size Number of sequence numbers that may be outstanding at once
+     * @param limit Total number of packets in the transfer
+     */
+    public SlidingWindow(int size, long limit) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        }
+
+        // At least one full bitmap word, so the ring always ends on a word
+        // boundary
+        int capacity = Math.max(64, Integer.highestOneBit(size));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+
+        this.size = size;
+        this.limit = limit;
+        this.mask = capacity - 1;
+        this.sent = new long[capacity >>> 6];
+        this.acked = new long[capacity >>> 6];
+    }
+
+    /**
+     * @return First sequence number in the window
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * @return Next sequence number that has not been sent yet
+     */
+    public int getNext() {
+        return next;
+    }
+
+    /**
+     * @return Number of packets sent but not yet ACKed
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Number of sequence numbers the window spans
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of slots in the ring backing the window
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Ring slot a sequence number maps to. Every sequence number inside the
+     * window maps to a distinct slot, so per-packet state can be kept in
+     * arrays of {@link #getCapacity()} entries indexed by slot.
+     *
+     * @param sequenceNumber Sequence number to map
+     * @return Slot index
+     */
+    public int slotOf(int sequenceNumber) {
+        return sequenceNumber & mask;
+    }
+
+    /**
+     * Sequence number inside the window that maps to a ring slot, the inverse
+     * of {@link #slotOf(int)}
+     *
+     * @param slot Slot index
+     * @return Sequence number occupying the slot
+     */
+    public int sequenceOf(int slot) {
+        return base + ((slot - base) & mask);
+    }
+
+    /**
+     * @return Total number of packets in the transfer
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return Number of packets the window has slid past
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Position of a sequence number in the whole transfer. Unlike the
+     * sequence number itself this never wraps, so it can index the data
+     * being sent.
+     *
+     * @param sequenceNumber Sequence number inside the window
+     * @return Index of the packet from the start of the transfer
+     */
+    public long indexOf(int sequenceNumber) {
+        return delivered + SequenceNumber.distance(base, sequenceNumber);
+    }
+
+    /**
+     * Determines if a sequence number currently falls inside the window
+     *
+     * @param sequenceNumber Sequence number to check
+     * @return Whether the sequence number is inside the window
+     */
+    public boolean contains(int sequenceNumber) {
+        int offset = SequenceNumber.distance(base, sequenceNumber);
+        return offset >= 0 && offset < size && delivered + offset < limit;
+    }
+
+    /**
+     * Checks if we are in a position to send a new packet
+     *
+     * @return Whether the next sequence number fits in the window
+     */
+    public boolean canSend() {
+        int offset = SequenceNumber.distance(base, next);
+        return offset < size && delivered + offset < limit;
+    }
+
+    /**
+     * Determines if every sequence number has been acknowledged
+     *
+     * @return Whether the window has slid past the last sequence number
+     */
+    public boolean isComplete() {
+        return delivered >= limit;
+    }
+
+    /**
+     * @param sequenceNumber Sequence number inside the window
+     * @return Whether the sequence number has been sent
+     */
+    public boolean isSent(int sequenceNumber) {
+        return SequenceNumber.lessThan(sequenceNumber, base) || (contains(sequenceNumber) && test(sent, sequenceNumber));
+    }
+
+    /**
+     * @param sequenceNumber Sequence number inside the window
+     * @return Whether the sequence number has been acknowledged
+     */
+    public boolean isAcked(int sequenceNumber) {
+        return SequenceNumber.lessThan(sequenceNumber, base) || (contains(sequenceNumber) && test(acked, sequenceNumber));
+    }
+
+    /**
+     * Marks a sequence number as sent, but not ACKed
+     *
+     * @param sequenceNumber Sequence number that was sent
+     */
+    public void markSent(int sequenceNumber) {
+        if (!contains(sequenceNumber)) {
+            return;
+        }
+
+        if (!test(sent, sequenceNumber) && !test(acked, sequenceNumber)) {
+            inFlight++;
+        }
+        set(sent, sequenceNumber);
+        if (!SequenceNumber.lessThan(sequenceNumber, next)) {
+            next = sequenceNumber + 1;
+        }
+    }
+
+    /**
+     * Marks a sequence number as ACKed (or received) and slides the window
+     * past every leading acknowledged slot
+     *
+     * @param sequenceNumber Sequence number that was acknowledged
+     * @return Whether this was the first acknowledgement of the sequence number
+     */
+    public boolean markAcked(int sequenceNumber) {
+        if (!contains(sequenceNumber) || test(acked, sequenceNumber)) {
+            return false;
+        }
+
+        if (test(sent, sequenceNumber)) {
+            inFlight--;
+        }
+        set(acked, sequenceNumber);
+        if (!SequenceNumber.lessThan(sequenceNumber, next)) {
+            next = sequenceNumber + 1;
+        }
+        advance();
+        return true;
+    }
+
+    /**
+     * Slides the window past the run of acknowledged slots at its start, a
+     * bitmap word at a time
+     *
+     * @return Number of sequence numbers the window moved
+     */
+    private int advance() {
+        int start = base;
+
+        while (delivered < limit) {
+            int slot = base & mask, bit = slot & 63;
+            long run = ~(acked[slot >>> 6] >>> bit);
+            int ones = Long.numberOfTrailingZeros(run);
+            if (ones == 0) {
+                break;
+            }
+
+            long clear = ones == 64 ? -1L : ((1L << ones) - 1) << bit;
+            acked[slot >>> 6] &= ~clear;
+            sent[slot >>> 6] &= ~clear;
+            base += ones;
+            delivered += ones;
+        }
+
+        if (SequenceNumber.lessThan(next, base)) {
+            next = base;
+        }
+        return SequenceNumber.distance(start, base);
+    }
+
+    /**
+     * Collects the runs of acknowledged sequence numbers past the start of the
+     * window, for selective ACKs. Each run is written as a pair of
+     * sequence numbers, the first in the run and the one just past it.
+     *
+     * @param ranges Array to fill with start/end pairs
+     * @param maxRanges Maximum number of runs to collect
+     * @return Number of runs collected
+     */
+    public int ackedRanges(int[] ranges, int maxRanges) {
+        int span = SequenceNumber.distance(base, next), count = 0, offset = 0;
+
+        while (count < maxRanges && offset < span) {
+            int start = scan(acked, true, offset, span);
+            if (start >= span) {
+                break;
+            }
+
+            int end = scan(acked, false, start, span);
+            ranges[2 * count] = base + start;
+            ranges[2 * count + 1] = base + end;
+            count++;
+            offset = end;
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the first sequence number in a range that has not been ACKed
+     *
+     * @param from First sequence number to look at
+     * @param to Sequence number to stop at
+     * @return First unACKed sequence number, or 'to' if there is none
+     */
+    public int firstUnacked(int from, int to) {
+        int start = Math.max(0, SequenceNumber.distance(base, from));
+        int end = Math.min(size, SequenceNumber.distance(base, to));
+        if (start >= end) {
+            return to;
+        }
+
+        int offset = scan(acked, false, start, end);
+        return offset >= end ? to : base + offset;
+    }
+
+    /**
+     * Counts back from the newest sequence number sent to the one with a
+     * given number of ACKed sequence numbers at or after it. Every unACKed
+     * sequence number before it has at least that many ACKed after it.
+     *
+     * @param count Number of ACKed sequence numbers to count back over
+     * @return The count'th ACKed sequence number from the end of the window,
+     * or the start of the window if fewer than that have been ACKed
+     */
+    public int ackedFromEnd(int count) {
+        int offset = SequenceNumber.distance(base, next);
+
+        while (offset > 0 && count > 0) {
+            // The slots from offset - take up to offset share a bitmap word;
+            // shift them to its top, newest first
+            int slot = (base + offset - 1) & mask, bit = slot & 63, take = Math.min(bit + 1, offset);
+            long word = (acked[slot >>> 6] << (63 - bit)) & (-1L << (64 - take));
+            int ones = Long.bitCount(word);
+            if (ones >= count) {
+                for (int i = 1; i < count; i++) {
+                    word &= ~(Long.MIN_VALUE >>> Long.numberOfLeadingZeros(word));
+                }
+                return base + offset - 1 - Long.numberOfLeadingZeros(word);
+            }
+            count -= ones;
+            offset -= take;
+        }
+
+        return base;
+    }
+
+    /**
+     * Finds the first slot at or after an offset from the start of the
+     * window whose bit has the given value, a bitmap word at a time
+     *
+     * @param bitmap Bitmap to search
+     * @param value Bit value to look for
+     * @param from Offset from the start of the window to search from
+     * @param to Offset to stop searching at
+     * @return Offset of the first matching slot, or 'to' if there is none
+     */
+    private int scan(long[] bitmap, boolean value, int from, int to) {
+        int offset = from;
+
+        while (offset < to) {
+            int slot = (base + offset) & mask, bit = slot & 63;
+            long word = (value ? bitmap[slot >>> 6] : ~bitmap[slot >>> 6]) >>> bit;
+            if (word != 0) {
+                return Math.min(to, offset + Long.numberOfTrailingZeros(word));
+            }
+            offset += 64 - bit;
+        }
+
+        return to;
+    }
+
+    private boolean test(long[] bitmap, int sequenceNumber) {
+        int slot = sequenceNumber & mask;
+        return (bitmap[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void set(long[] bitmap, int sequenceNumber) {
+        int slot = sequenceNumber & mask;
+        bitmap[slot >>> 6] |= 1L << slot;
+    }
+
+    /**
+     * Formats the window to be readable by the console. Sent packets are
+     * suffixed with '*', ACKed packets with '#', and slots past the last
+     * sequence number are shown as '-'.
+     *
+     * @return Formatted string
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < size; i++) {
+            int sequenceNumber = base + i;
+            if (i > 0) {
+                builder.append(',');
+            }
+
+            if (delivered + i >= limit) {
+                builder.append('-');
+                continue;
+            }
+
+            builder.append(SequenceNumber.toString(sequenceNumber));
+            if (test(acked, sequenceNumber)) {
+                builder.append('#');
+            } else if (test(sent, sequenceNumber)) {
+                builder.append('*');
+            }
+        }
+
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,48 @@
+package protocol;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Sizes the kernel's buffers of a socket from the so.sndbuf and so.rcvbuf
+ * properties, in bytes. A large window sent or received in a burst
+ * overflows the default buffers, and the kernel drops what does not fit
+ * without telling anyone. The kernel caps both at its own limits
+ * (net.core.wmem_max and rmem_max on Linux), so the sizes it settled on are
+ * worth printing.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public final class SocketBuffers {
+
+    private SocketBuffers() {
+    }
+
+    /**
+     * Applies whichever of so.sndbuf and so.rcvbuf are set
+     *
+     * @param channel Channel to size the buffers of
+     * @throws IOException If the channel is closed
+     */
+    public static void configure(DatagramChannel channel) throws IOException {
+        Integer send = Integer.getInteger("so.sndbuf"), receive = Integer.getInteger("so.rcvbuf");
+        if (send != null) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, send);
+        }
+        if (receive != null) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receive);
+        }
+    }
+
+    /**
+     * @param channel Channel to describe
+     * @return Sizes of the channel's buffers, as the kernel has them
+     * @throws IOException If the channel is closed
+     */
+    public static String describe(DatagramChannel channel) throws IOException {
+        return "send=" + channel.getOption(StandardSocketOptions.SO_SNDBUF) + " receive="
+                + channel.getOption(StandardSocketOptions.SO_RCVBUF) + " bytes";
+    }
+}
@@ -0,0 +1,82 @@
+package protocol;
+
+/**
+ * How a striped transfer deals its segments out to its stripes. A transfer
+ * may be split across several sessions, each with its own socket, thread
+ * and window, so it is not held to what one of them can push. Segments are
+ * dealt out in turn: stripe s of k carries segments s, s + k, s + 2k and so
+ * on, so the stripes advance through the file side by side.
+ *
+ * The stripes of a transfer have consecutive session IDs, starting from the
+ * transfer's own ID at stripe 0, and share the transfer's sequence space:
+ * the packet carrying segment i goes out as sequence number i, so stripe s
+ * sends every k-th sequence number from s. Each stripe still keeps its
+ * window over its own packets, numbered 0, 1, 2 and so on, so a window of n
+ * holds n of its packets rather than n / k. The numbers are converted on
+ * their way on and off the wire.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public final class Stripes {
+
+    private Stripes() {
+    }
+
+    /**
+     * @param total Number of segments in the whole transfer
+     * @param stripe Index of the stripe
+     * @param stripes Number of stripes
+     * @return Number of segments the stripe carries
+     */
+    public static long count(long total, int stripe, int stripes) {
+        return Math.max(0, (total - stripe + stripes - 1) / stripes);
+    }
+
+    /**
+     * @param index Index of a packet within its stripe
+     * @param stripe Index of the stripe
+     * @param stripes Number of stripes
+     * @return Index of the packet's segment in the whole transfer
+     */
+    public static long segmentOf(long index, int stripe, int stripes) {
+        return index * stripes + stripe;
+    }
+
+    /**
+     * @param sequenceNumber Sequence number of a packet within its stripe
+     * @param stripe Index of the stripe
+     * @param stripes Number of stripes
+     * @return Sequence number the packet carries on the wire, that of its
+     * segment in the whole transfer
+     */
+    public static int toWire(int sequenceNumber, int stripe, int stripes) {
+        return sequenceNumber * stripes + stripe;
+    }
+
+    /**
+     * Turns a sequence number off the wire back into one within the stripe.
+     * Both wrap around, so it is worked out from a sequence number within
+     * the stripe that is near it, such as the start of the window. A
+     * sequence number of another stripe's comes back out of toWire as
+     * something else.
+     *
+     * @param wire Sequence number on the wire
+     * @param near Sequence number within the stripe near it
+     * @param stripe Index of the stripe
+     * @param stripes Number of stripes
+     * @return Sequence number within the stripe
+     */
+    public static int fromWire(int wire, int near, int stripe, int stripes) {
+        return near + (wire - toWire(near, stripe, stripes)) / stripes;
+    }
+
+    /**
+     * @param sessionId Session ID of a stripe
+     * @param stripe Index of the stripe
+     * @return ID of the transfer the stripe belongs to
+     */
+    public static int transferOf(int sessionId, int stripe) {
+        return sessionId - stripe;
+    }
+}
@@ -0,0 +1,200 @@
+package protocol;
+
+/**
+ * Hashed timer wheel for per-packet deadlines. Each timer is identified by a
+ * small integer id (a window slot) and lives in an intrusive doubly linked
+ * list hanging off the bucket its deadline hashes to, so scheduling,
+ * cancelling and firing a timer are all O(1) and nothing is allocated after
+ * construction. Deadlines further out than one turn of the wheel simply stay
+ * in their bucket until the wheel comes back around to them.
+ *
+ * Timers fire at most one tick late, never early.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class TimerWheel {
+
+    /**
+     * Called for every timer that has expired
+     */
+    public interface Expiry {
+
+        /**
+         * @param id Id of the expired timer
+         * @param now Time the wheel was advanced to, in nanoseconds
+         */
+        void expired(int id, long now);
+    }
+
+    private static final int NONE = -1;
+
+    private final long origin, tickNanos;
+    private final int mask;
+    private final int[] heads, next, prev, bucketOf;
+    private final long[] deadlines;
+    private long tick;
+    private int size;
+
+    /**
+     * @param capacity Number of timer ids, 0 through capacity - 1
+     * @param tickNanos Resolution of the wheel, in nanoseconds
+     * @param buckets Number of buckets, rounded up to a power of two
+     * @param now Current time, in nanoseconds
+     */
+    public TimerWheel(int capacity, long tickNanos, int buckets, long now) {
+        int wheelSize = Integer.highestOneBit(buckets);
+        if (wheelSize < buckets) {
+            wheelSize <<= 1;
+        }
+
+        this.origin = now;
+        this.tickNanos = tickNanos;
+        this.mask = wheelSize - 1;
+        this.heads = new int[wheelSize];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.bucketOf = new int[capacity];
+        this.deadlines = new long[capacity];
+
+        for (int i = 0; i < wheelSize; i++) {
+            heads[i] = NONE;
+        }
+        for (int i = 0; i < capacity; i++) {
+            bucketOf[i] = NONE;
+        }
+    }
+
+    /**
+     * @return Resolution of the wheel, in nanoseconds
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return Number of scheduled timers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id Timer id
+     * @return Whether the timer is scheduled
+     */
+    public boolean isScheduled(int id) {
+        return bucketOf[id] != NONE;
+    }
+
+    /**
+     * @param id Timer id
+     * @return Deadline of the timer, in nanoseconds
+     */
+    public long getDeadline(int id) {
+        return deadlines[id];
+    }
+
+    /**
+     * Finds the next bucket advance has to look at. Its timers may belong to
+     * a later turn of the wheel, so this is the soonest the next timer can
+     * fire rather than when it will, but waking then never misses one.
+     *
+     * @param now Current time, in nanoseconds
+     * @return Nanoseconds until the next bucket of timers is due, 0 if one
+     * already is, or Long.MAX_VALUE if no timers are scheduled
+     */
+    public long timeUntilNext(long now) {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        int i = 0;
+        while (i < mask && heads[(int) ((tick + i) & mask)] == NONE) {
+            i++;
+        }
+        return Math.max(0, origin + (tick + i + 1) * tickNanos - now);
+    }
+
+    /**
+     * Schedules a timer, replacing any deadline it already had
+     *
+     * @param id Timer id
+     * @param deadline Time the timer should fire, in nanoseconds
+     */
+    public void schedule(int id, long deadline) {
+        cancel(id);
+
+        // Anything already due goes in the next bucket we will look at
+        long deadlineTick = Math.max((deadline - origin) / tickNanos, tick);
+        int bucket = (int) (deadlineTick & mask);
+
+        deadlines[id] = deadline;
+        bucketOf[id] = bucket;
+        prev[id] = NONE;
+        next[id] = heads[bucket];
+        if (heads[bucket] != NONE) {
+            prev[heads[bucket]] = id;
+        }
+        heads[bucket] = id;
+        size++;
+    }
+
+    /**
+     * Cancels a timer if it is scheduled
+     *
+     * @param id Timer id
+     */
+    public void cancel(int id) {
+        int bucket = bucketOf[id];
+        if (bucket == NONE) {
+            return;
+        }
+
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[bucket] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+
+        bucketOf[id] = NONE;
+        size--;
+    }
+
+    /**
+     * Fires every timer whose deadline has passed. The callback may
+     * reschedule the timer that just fired, but must not cancel other timers.
+     *
+     * @param now Current time, in nanoseconds
+     * @param expiry Callback for expired timers
+     * @return Number of timers fired
+     */
+    public int advance(long now, Expiry expiry) {
+        long currentTick = (now - origin) / tickNanos;
+        int fired = 0;
+
+        // Only buckets whose whole tick has passed are due. After a long
+        // stall, one turn of the wheel covers every bucket.
+        long ticks = Math.min(currentTick - tick, mask + 1);
+        for (long i = 0; i < ticks && size > 0; i++) {
+            int id = heads[(int) ((tick + i) & mask)];
+            while (id != NONE) {
+                int following = next[id];
+                if (deadlines[id] - now <= 0) {
+                    cancel(id);
+                    expiry.expired(id, now);
+                    fired++;
+                }
+                id = following;
+            }
+        }
+
+        if (currentTick > tick) {
+            tick = currentTick;
+        }
+        return fired;
+    }
+}
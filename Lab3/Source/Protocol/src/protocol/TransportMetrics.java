@@ -0,0 +1,346 @@
+package protocol;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of a live transfer. Every update is a
+ * single atomic operation, so the packet path never locks, and any number of
+ * threads may update the same instance while JMX clients read it.
+ *
+ * Once exported, the metrics show up as protocol:type=TransportMetrics in
+ * JConsole. If the metrics.file property is set they are also appended to
+ * that file as one line of name=value pairs every metrics.interval
+ * milliseconds (1000 by default).
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class TransportMetrics implements TransportMetricsMBean {
+
+    private final AtomicLong packetsSent = new AtomicLong(), packetsReceived = new AtomicLong();
+    private final AtomicLong retransmissions = new AtomicLong(), acks = new AtomicLong(), duplicates = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong(), windowStalls = new AtomicLong();
+    private final AtomicLong parityPackets = new AtomicLong(), recovered = new AtomicLong();
+    private final ConcurrentHistogram rtt = new ConcurrentHistogram(), timeInWindow = new ConcurrentHistogram();
+    private ScheduledExecutorService dumper;
+    private Writer dump;
+
+    /**
+     * Registers the metrics with the platform MBean server and, if the
+     * metrics.file property is set, starts dumping them to that file.
+     * Failures are reported but never stop the transfer.
+     *
+     * @param name Name to register under, such as "sender"
+     */
+    public void export(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("protocol:type=TransportMetrics,name=" + ObjectName.quote(name)));
+        } catch (JMException ex) {
+            System.out.println("Could not register metrics: " + ex);
+        }
+
+        String file = System.getProperty("metrics.file");
+        if (file != null) {
+            try {
+                startDump(new File(file), Long.getLong("metrics.interval", 1000L));
+            } catch (IOException ex) {
+                System.out.println("Could not open " + file + ": " + ex);
+            }
+        }
+    }
+
+    /**
+     * Appends the metrics to a file at a fixed rate, from a background thread
+     *
+     * @param file File to append to
+     * @param interval Time between lines, in milliseconds
+     * @throws IOException If the file cannot be opened
+     */
+    public synchronized void startDump(File file, long interval) throws IOException {
+        stopDump();
+        dump = new FileWriter(file, true);
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                writeDump();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops dumping, after writing one last line so the end of the transfer
+     * is always in the file
+     */
+    public synchronized void stopDump() {
+        if (dumper == null) {
+            return;
+        }
+
+        dumper.shutdownNow();
+        writeDump();
+        try {
+            dump.close();
+        } catch (IOException ex) {
+        }
+        dumper = null;
+        dump = null;
+    }
+
+    private synchronized void writeDump() {
+        if (dump == null) {
+            return;
+        }
+
+        try {
+            dump.write("time=" + System.currentTimeMillis() + " " + this + "\n");
+            dump.flush();
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Counts a data packet sent for the first time
+     */
+    public void onPacketSent() {
+        packetsSent.incrementAndGet();
+    }
+
+    /**
+     * Counts a data packet received
+     */
+    public void onPacketReceived() {
+        packetsReceived.incrementAndGet();
+    }
+
+    /**
+     * Counts a data packet sent again
+     */
+    public void onRetransmission() {
+        retransmissions.incrementAndGet();
+    }
+
+    /**
+     * Counts an ACK sent or received
+     */
+    public void onAck() {
+        acks.incrementAndGet();
+    }
+
+    /**
+     * Counts a duplicate data packet, or an ACK that carried nothing new
+     */
+    public void onDuplicate() {
+        duplicates.incrementAndGet();
+    }
+
+    /**
+     * Counts a dropped packet
+     */
+    public void onDrop() {
+        drops.incrementAndGet();
+    }
+
+    /**
+     * Counts a parity packet sent
+     */
+    public void onParitySent() {
+        parityPackets.incrementAndGet();
+    }
+
+    /**
+     * Counts a data packet rebuilt from parity
+     */
+    public void onRecovered() {
+        recovered.incrementAndGet();
+    }
+
+    /**
+     * Counts the sender's window going from open to full, so it has to wait
+     * for ACKs before sending anything new
+     */
+    public void onWindowStall() {
+        windowStalls.incrementAndGet();
+    }
+
+    /**
+     * Records a round trip sample
+     *
+     * @param nanos Round trip time, in nanoseconds
+     */
+    public void recordRtt(long nanos) {
+        rtt.record(nanos);
+    }
+
+    /**
+     * Records how long a packet was in the window, from being sent (or
+     * received) to the window sliding past it
+     *
+     * @param nanos Time in the window, in nanoseconds
+     */
+    public void recordTimeInWindow(long nanos) {
+        timeInWindow.record(nanos);
+    }
+
+    /**
+     * @return Round trip times recorded so far
+     */
+    public ConcurrentHistogram getRtt() {
+        return rtt;
+    }
+
+    /**
+     * @return Times in the window recorded so far
+     */
+    public ConcurrentHistogram getTimeInWindow() {
+        return timeInWindow;
+    }
+
+    @Override
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    @Override
+    public long getPacketsReceived() {
+        return packetsReceived.get();
+    }
+
+    @Override
+    public long getRetransmissions() {
+        return retransmissions.get();
+    }
+
+    @Override
+    public long getAcks() {
+        return acks.get();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public long getDrops() {
+        return drops.get();
+    }
+
+    @Override
+    public long getParityPackets() {
+        return parityPackets.get();
+    }
+
+    @Override
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    @Override
+    public long getWindowStalls() {
+        return windowStalls.get();
+    }
+
+    @Override
+    public long getRttCount() {
+        return rtt.getCount();
+    }
+
+    @Override
+    public double getRttMean() {
+        return rtt.snapshot().getMean() / 1e3;
+    }
+
+    @Override
+    public double getRttP50() {
+        return rtt.snapshot().getPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getRttP99() {
+        return rtt.snapshot().getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getRttMax() {
+        return rtt.snapshot().getMax() / 1e3;
+    }
+
+    @Override
+    public long getTimeInWindowCount() {
+        return timeInWindow.getCount();
+    }
+
+    @Override
+    public double getTimeInWindowMean() {
+        return timeInWindow.snapshot().getMean() / 1e3;
+    }
+
+    @Override
+    public double getTimeInWindowP50() {
+        return timeInWindow.snapshot().getPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getTimeInWindowP99() {
+        return timeInWindow.snapshot().getPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getTimeInWindowMax() {
+        return timeInWindow.snapshot().getMax() / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        packetsSent.set(0);
+        packetsReceived.set(0);
+        retransmissions.set(0);
+        acks.set(0);
+        duplicates.set(0);
+        drops.set(0);
+        windowStalls.set(0);
+        parityPackets.set(0);
+        recovered.set(0);
+        rtt.reset();
+        timeInWindow.reset();
+    }
+
+    /**
+     * Formats the metrics as name=value pairs on one line, times in
+     * microseconds
+     *
+     * @return Formatted string
+     */
+    @Override
+    public String toString() {
+        Histogram r = rtt.snapshot(), w = timeInWindow.snapshot();
+        return String.format(Locale.ROOT, "sent=%d received=%d retransmitted=%d acks=%d duplicates=%d drops=%d "
+                + "parity=%d recovered=%d window_stalls=%d rtt_p50_us=%.1f rtt_p99_us=%.1f rtt_max_us=%.1f window_p50_us=%.1f "
+                + "window_p99_us=%.1f window_max_us=%.1f",
+                getPacketsSent(), getPacketsReceived(), getRetransmissions(), getAcks(), getDuplicates(), getDrops(),
+                getParityPackets(), getRecovered(), getWindowStalls(), r.getPercentile(50) / 1e3, r.getPercentile(99) / 1e3,
+                r.getMax() / 1e3,
+                w.getPercentile(50) / 1e3, w.getPercentile(99) / 1e3, w.getMax() / 1e3);
+    }
+}
@@ -0,0 +1,111 @@
+package protocol;
+
+/**
+ * Management interface of {@link TransportMetrics}, as seen from JConsole or
+ * any other JMX client. Times are in microseconds.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public interface TransportMetricsMBean {
+
+    /**
+     * @return Data packets sent for the first time
+     */
+    long getPacketsSent();
+
+    /**
+     * @return Data packets received
+     */
+    long getPacketsReceived();
+
+    /**
+     * @return Data packets sent again
+     */
+    long getRetransmissions();
+
+    /**
+     * @return ACKs sent or received
+     */
+    long getAcks();
+
+    /**
+     * @return Duplicate data packets or ACKs that carried nothing new
+     */
+    long getDuplicates();
+
+    /**
+     * @return Packets dropped, on purpose or for lack of room
+     */
+    long getDrops();
+
+    /**
+     * @return Parity packets sent
+     */
+    long getParityPackets();
+
+    /**
+     * @return Data packets rebuilt from parity instead of being resent
+     */
+    long getRecovered();
+
+    /**
+     * @return Times the window filled up and held back new packets
+     */
+    long getWindowStalls();
+
+    /**
+     * @return Number of round trip samples
+     */
+    long getRttCount();
+
+    /**
+     * @return Mean round trip time
+     */
+    double getRttMean();
+
+    /**
+     * @return Median round trip time
+     */
+    double getRttP50();
+
+    /**
+     * @return 99th percentile round trip time
+     */
+    double getRttP99();
+
+    /**
+     * @return Longest round trip time
+     */
+    double getRttMax();
+
+    /**
+     * @return Number of packets that have left the window
+     */
+    long getTimeInWindowCount();
+
+    /**
+     * @return Mean time a packet spends in the window
+     */
+    double getTimeInWindowMean();
+
+    /**
+     * @return Median time a packet spends in the window
+     */
+    double getTimeInWindowP50();
+
+    /**
+     * @return 99th percentile time a packet spends in the window
+     */
+    double getTimeInWindowP99();
+
+    /**
+     * @return Longest time a packet spent in the window
+     */
+    double getTimeInWindowMax();
+
+    /**
+     * Zeroes every counter and histogram
+     */
+    void reset();
+}
@@ -0,0 +1,88 @@
+package protocol;
+
+/**
+ * Delay based congestion control in the style of TCP Vegas. Once per window
+ * of data the window is compared against the throughput the base (minimum)
+ * RTT would allow; the estimated number of packets queued in the path
+ * decides whether the window grows, shrinks or holds. Loss is handled as in
+ * Reno.
+ *
+ * Each window's RTT is the least of its samples, which leaves out most of
+ * the scheduling jitter at either end, and a rise of less than JITTER over
+ * the base RTT is not taken for a queue. A window with too few samples for
+ * the least of them to mean much grows as Reno would, as Linux's Vegas
+ * does, rather than read one late sample as a queue.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class VegasCongestionControl extends RenoCongestionControl {
+
+    // Target number of packets queued in the path
+    static final int ALPHA = 2, BETA = 4;
+
+    // Fewest samples in a window for its RTT to be trusted
+    static final int MIN_SAMPLES = 3;
+
+    // Nanoseconds a round trip may rise by without a queue in the path,
+    // from the threads at either end not waking at once
+    static final long JITTER = 200000L;
+
+    private long baseRtt = Long.MAX_VALUE, minRtt = Long.MAX_VALUE;
+    private int ackedInWindow, samples;
+
+    // Whether the window held the sender back at any point in this window
+    // of data; if not, it may shrink but not grow
+    private boolean limitedInWindow;
+
+    @Override
+    public void onAck(int acked, long rtt, long now, boolean limited) {
+        if (rtt > 0) {
+            baseRtt = Math.min(baseRtt, rtt);
+            minRtt = Math.min(minRtt, rtt);
+            samples++;
+        }
+        ackedInWindow += acked;
+        limitedInWindow |= limited;
+        if (ackedInWindow < cwnd) {
+            return;
+        }
+
+        if (samples < MIN_SAMPLES) {
+            super.onAck(ackedInWindow, rtt, now, limitedInWindow);
+        } else {
+            // Packets sitting in queues = cwnd * (rtt - baseRtt) / rtt, less
+            // what the scheduling of either end accounts for
+            long queued = cwnd * Math.max(0, minRtt - baseRtt - JITTER) / minRtt;
+            if (cwnd < ssthresh) {
+                if (queued > ALPHA) {
+                    // Leave slow start as soon as queues start to build
+                    ssthresh = cwnd;
+                } else if (limitedInWindow) {
+                    cwnd = Math.min(cwnd * 2, ssthresh);
+                }
+            } else if (queued < ALPHA && limitedInWindow) {
+                cwnd++;
+            } else if (queued > BETA && cwnd > 2) {
+                cwnd--;
+            }
+        }
+
+        ackedInWindow = 0;
+        limitedInWindow = false;
+        samples = 0;
+        minRtt = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void onLoss(long now) {
+        super.onLoss(now);
+        ackedInWindow = 0;
+    }
+
+    @Override
+    public void onTimeout(long now) {
+        super.onTimeout(now);
+        ackedInWindow = 0;
+    }
+}
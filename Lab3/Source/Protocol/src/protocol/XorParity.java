@@ -0,0 +1,52 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Forward error correction by XOR parity. The sender follows every group of
+ * data packets with one parity packet holding the XOR of their segments, so
+ * the receiver can rebuild any single segment missing from the group by
+ * XORing the parity with the segments it has, without waiting for a
+ * retransmission. Segments shorter than the longest count as padded with
+ * zeros.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class XorParity {
+
+    /**
+     * Zeroes a run of bytes
+     *
+     * @param buffer Buffer to clear
+     * @param offset Position of the first byte
+     * @param length Number of bytes
+     */
+    public static void clear(ByteBuffer buffer, int offset, int length) {
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            buffer.putLong(offset + i, 0);
+        }
+        for (; i < length; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+    }
+
+    /**
+     * XORs the remaining bytes of one buffer into another, a long at a time.
+     * Neither buffer's position moves.
+     *
+     * @param into Buffer to XOR into
+     * @param offset Position in 'into' to start at
+     * @param from Buffer positioned over the bytes to XOR in
+     */
+    public static void xor(ByteBuffer into, int offset, ByteBuffer from) {
+        int start = from.position(), length = from.remaining(), i = 0;
+        for (; i + 8 <= length; i += 8) {
+            into.putLong(offset + i, into.getLong(offset + i) ^ from.getLong(start + i));
+        }
+        for (; i < length; i++) {
+            into.put(offset + i, (byte) (into.get(offset + i) ^ from.get(start + i)));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package receiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped file a session's data is written into. Every segment has a
+ * fixed place in the file, segment i at i * segmentSize, so segments are
+ * written where they belong the moment they arrive, in whatever order, and
+ * nothing is ever held back waiting for a hole to fill.
+ *
+ * The file is sized for full segments up front and trimmed to the real size
+ * once the short last segment has told us where the data ends.
+ *
+ * The stripes of a striped transfer share one sink, and may be handled by
+ * different workers at once. Each writes only its own segments, so a shared
+ * sink only has to keep the workers off each other's buffer positions.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class FileSink {
+
+    // Largest region mapped at once, rounded down to whole segments
+    static final long MAX_REGION_SIZE = 1L << 30;
+
+    // Shared sinks still being written, by file
+    static final Map<File, FileSink> shared = new HashMap<File, FileSink>();
+
+    final File path;
+    final RandomAccessFile file;
+    final FileChannel fileChannel;
+    final long segmentCount, segmentsPerRegion;
+    final int segmentSize;
+    final MappedByteBuffer[] regions;
+    final boolean isShared;
+    volatile long size;
+
+    // Sessions writing a shared sink that have yet to close it
+    int users;
+
+    /**
+     * @param path File to write
+     * @param segmentSize Bytes of file data per packet
+     * @param segmentCount Number of segments in the transfer
+     * @throws IOException
+     */
+    public FileSink(File path, int segmentSize, long segmentCount) throws IOException {
+        this(path, segmentSize, segmentCount, false);
+    }
+
+    private FileSink(File path, int segmentSize, long segmentCount, boolean isShared) throws IOException {
+        this.isShared = isShared;
+        this.path = path;
+        this.file = new RandomAccessFile(path, "rw");
+        this.fileChannel = file.getChannel();
+        this.segmentSize = segmentSize;
+        this.segmentCount = segmentCount;
+        this.segmentsPerRegion = MAX_REGION_SIZE / segmentSize;
+        this.regions = new MappedByteBuffer[(int) ((segmentCount + segmentsPerRegion - 1) / segmentsPerRegion)];
+        this.size = segmentCount * segmentSize;
+        file.setLength(size);
+    }
+
+    /**
+     * Opens a file for one of the sessions writing it, creating it for the
+     * first. Each session must close it once.
+     *
+     * @param path File to write
+     * @param segmentSize Bytes of file data per packet
+     * @param segmentCount Number of segments across every session
+     * @return Sink shared by every session writing the file
+     * @throws IOException
+     */
+    public static FileSink openShared(File path, int segmentSize, long segmentCount) throws IOException {
+        synchronized (shared) {
+            FileSink sink = shared.get(path);
+            if (sink == null) {
+                sink = new FileSink(path, segmentSize, segmentCount, true);
+                shared.put(path, sink);
+            }
+            sink.users++;
+            return sink;
+        }
+    }
+
+    /**
+     * @return File being written
+     */
+    public File getPath() {
+        return path;
+    }
+
+    /**
+     * @return Size of the file, in bytes, as far as we know it
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Copies one segment into its place in the file
+     *
+     * @param index Segment index
+     * @param data Buffer positioned over the segment, short only for the
+     * last one
+     * @throws IOException If the segment is not in the file or does not fit
+     * its place, in which case nothing is written
+     */
+    public void write(long index, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        if (index < 0 || index >= segmentCount) {
+            throw new IOException("Segment " + index + " is not in the file of " + segmentCount + " segments");
+        }
+        if (length > segmentSize) {
+            throw new IOException("Segment " + index + " has " + length + " bytes, more than the " + segmentSize
+                    + " it has room for");
+        }
+
+        ByteBuffer view = isShared ? region(index).duplicate() : region(index);
+        view.position((int) ((index % segmentsPerRegion) * segmentSize));
+        view.put(data);
+
+        if (index == segmentCount - 1) {
+            size = index * segmentSize + length;
+        }
+    }
+
+    /**
+     * Reads back a segment already written. Segments not yet written read as
+     * zeroes.
+     *
+     * @param index Segment index
+     * @return View of the whole segment, zero padded if it is the last one
+     * @throws IOException
+     */
+    public ByteBuffer segment(long index) throws IOException {
+        ByteBuffer view = region(index).duplicate();
+        int offset = (int) ((index % segmentsPerRegion) * segmentSize);
+        view.limit(offset + segmentSize).position(offset);
+        return view;
+    }
+
+    /**
+     * Maps the region holding a segment, the first time it is needed. Locking
+     * costs next to nothing while only one thread uses the sink.
+     *
+     * @param index Segment index
+     * @return Region holding the segment
+     * @throws IOException
+     */
+    private synchronized MappedByteBuffer region(long index) throws IOException {
+        int region = (int) (index / segmentsPerRegion);
+        if (regions[region] == null) {
+            long start = region * segmentsPerRegion * segmentSize;
+            long regionSize = Math.min(segmentsPerRegion * segmentSize, segmentCount * segmentSize - start);
+            regions[region] = fileChannel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+        }
+        return regions[region];
+    }
+
+    /**
+     * Flushes the data to disk, trims the file to its real size and releases
+     * it. A shared sink is only finished once every session has closed it.
+     *
+     * @return Whether the file was finished
+     * @throws IOException
+     */
+    public boolean close() throws IOException {
+        if (isShared) {
+            synchronized (shared) {
+                if (--users > 0) {
+                    return false;
+                }
+                shared.remove(path);
+            }
+        }
+
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i] != null) {
+                regions[i].force();
+                regions[i] = null;
+            }
+        }
+
+        fileChannel.truncate(size);
+        file.close();
+        return true;
+    }
+}
@@ -1,126 +1,184 @@
 package receiver;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.Random;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import protocol.Datagram;
+import protocol.DatagramPool;
+import protocol.ImpairmentEngine;
+import protocol.PacketCodec;
+import protocol.SocketBuffers;
+import protocol.SlidingWindow;
+import protocol.TransportMetrics;
 
 /**
  * @date 09/30/2015
  * @author Andrew Jenkins, Nathan Robertus
  */
 public class Receiver {
-    static DatagramPacket sendPkt, rcvPkt = initReceiveDataConstraints();
-    static byte[] rcvData = new byte[1024];
-    static int numOfPacketsToDrop = -1;
-    static int[] packetIndicesToDrop;
-    static String[] window;
-    static byte currentSequence, sequenceNumberSize, windowSize;
+
+    // Largest packet a sender may send: a data header and the largest
+    // segment a SYN may ask for
+    static final int MAX_DATAGRAM = Math.max(PacketCodec.MAX_HEADER_SIZE + Session.MAX_SEGMENT,
+            PacketCodec.MAX_SYN_SIZE);
+
+    // Packets that may wait for each worker
+    static final int QUEUE_SIZE = 1024;
+
+    // Statistics of every session, updated by all the workers at once
+    static final TransportMetrics metrics = new TransportMetrics();
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments. Set the impair property to
+     * put incoming packets through an emulated network (see
+     * ImpairmentEngine), and impair.seed to repeat a run exactly. The
+     * receiver.port property picks the port to listen on, and
+     * receiver.sockets listens on that many consecutive ports from it, each
+     * with a thread of its own, so the stripes of a striped transfer are not
+     * all received by one thread (see Stripes). Metrics are
+     * exported over JMX, and dumped to metrics.file if it is set (see
+     * TransportMetrics). Set log.level to info or off to keep the
+     * per-packet events out of the console (see EventLog). so.sndbuf and
+     * so.rcvbuf size the sockets' buffers (see SocketBuffers); every sender
+     * shares these sockets, so they need the larger receive buffer.
+     * segment.max is the largest segment a sender may use, 1447 bytes by
+     * default so a packet fits in an Ethernet frame; packets are received
+     * into buffers of that size.
      * @throws java.io.IOException
      */
     public static void main(String[] args) throws IOException {
-        final DatagramSocket senderSocket = new DatagramSocket(9878),
-                receiverSocket = new DatagramSocket(9876);
-
-        while (window == null || !allPacketsReceived(window)) {
-            receiverSocket.receive(rcvPkt);
-            rcvData = rcvPkt.getData();
-
-            // Initialize window size and sequence size
-            if (window == null) {
-                initWindow(rcvData[0]);
-                windowSize = currentSequence = rcvData[0];
-                sequenceNumberSize = rcvData[3];
-            }
+        // ACKs go out from the port packets arrive on, so they reach
+        // senders that have connected their socket to it
+        int port = Integer.getInteger("receiver.port", 9876);
+        DatagramChannel[] receiverChannels = new DatagramChannel[Math.max(1, Integer.getInteger("receiver.sockets", 1))];
+        for (int i = 0; i < receiverChannels.length; i++) {
+            receiverChannels[i] = DatagramChannel.open();
+            SocketBuffers.configure(receiverChannels[i]);
+            receiverChannels[i].socket().bind(new InetSocketAddress(port == 0 ? 0 : port + i));
+            System.out.println("Receiver is listening on port " + receiverChannels[i].socket().getLocalPort());
+        }
+        System.out.println("Socket buffers: " + SocketBuffers.describe(receiverChannels[0]));
+        metrics.export("receiver");
+
+        // Spread sessions across one worker per core
+        SessionWorker[] workers = new SessionWorker[Runtime.getRuntime().availableProcessors()];
+
+        // Received packets travel to the workers in pooled buffers, and go
+        // back to the pool once they have been handled. The pool keeps
+        // enough for every queue to be full while each worker handles one
+        // packet and each socket receives another.
+        DatagramPool pool = new DatagramPool(MAX_DATAGRAM, workers.length * (QUEUE_SIZE + 1) + receiverChannels.length);
+
+        String impair = System.getProperty("impair");
+        long seed = Long.getLong("impair.seed", System.nanoTime());
+
+        for (int i = 0; i < workers.length; i++) {
+            ImpairmentEngine impairment = impair != null ? new ImpairmentEngine(impair, seed + i, pool) : null;
+            workers[i] = new SessionWorker(receiverChannels, pool, QUEUE_SIZE, impairment);
+            Thread thread = new Thread(workers[i], "session-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
 
-            if (!shouldDropPacket(rcvPkt)) {
-                window = updateWindow(window, rcvPkt.getData()[2]);
-                sendPkt = initSendDataConstraints(rcvData[0], rcvData[1], rcvData[2], rcvPkt.getAddress(), 9879);
-                senderSocket.send(sendPkt);
-            } else {
-                System.out.println("Packet " + rcvData[2] + " was dropped");
-            }
+        // Every socket but the first gets a thread of its own
+        for (int i = 1; i < receiverChannels.length; i++) {
+            final DatagramChannel channel = receiverChannels[i];
+            final int socket = i;
+            final DatagramPool socketPool = pool;
+            final SessionWorker[] socketWorkers = workers;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        receive(channel, socket, socketPool, socketWorkers);
+                    } catch (IOException ex) {
+                        System.out.println("Socket " + socket + ": " + ex);
+                    }
+                }
+            }, "receive-" + i);
+            thread.setDaemon(true);
+            thread.start();
         }
+        receive(receiverChannels[0], 0, pool, workers);
     }
 
     /**
-     * Determines if all packets have been successfully received
+     * Receives packets on one socket and hands each to the worker that owns
+     * its session, forever
      *
-     * @param window Current window
-     * @return Whether all packets have been received
+     * @param receiverChannel Channel to receive on
+     * @param socket Index of the channel
+     * @param pool Pool to take packet buffers from
+     * @param workers Workers to hand packets to
+     * @throws IOException If the channel fails
      */
-    public static boolean allPacketsReceived(String[] window) {
-        for (int i = 0; i < window.length; i++) {
-            // Check if our String contains a number... if it does, not all
-            // packets have been ACKed
-            if (window[i] == null || window[i].matches(".*\\d+.*")) {
-                return false;
+    public static void receive(DatagramChannel receiverChannel, int socket, DatagramPool pool, SessionWorker[] workers)
+            throws IOException {
+        while (true) {
+            Datagram rcvPkt = initReceiveDataConstraints(pool);
+            rcvPkt.address = receiverChannel.receive(rcvPkt.buffer);
+            rcvPkt.socket = socket;
+            rcvPkt.buffer.flip();
+
+            // Runts cannot even be routed
+            if (rcvPkt.buffer.remaining() < PacketCodec.MIN_PACKET_SIZE) {
+                metrics.onDrop();
+                pool.release(rcvPkt);
+                continue;
             }
-        }
-        return true;
-    }
 
-    /**
-     * Check to see if an integer array contains a given value
-     *
-     * @param arr Haystack
-     * @param val Needle
-     * @return The index of the value, if found, or -1 if not found
-     */
-    public static int arrayContains(int[] arr, int val) {
-        for (int i = 0; i < arr.length; i++) {
-            if (arr[i] == val) {
-                return i;
+            int sessionId = PacketCodec.sessionId(rcvPkt.buffer);
+            if (!workers[workerIndex(sessionId, workers.length)].offer(rcvPkt)) {
+                metrics.onDrop();
+                pool.release(rcvPkt);
             }
         }
-
-        return -1;
     }
 
     /**
-     * Initialize receive data packet
+     * Picks the worker that owns a session
      *
-     * @return Initialized packet
+     * @param sessionId Session ID from the packet header
+     * @param workers Number of workers
+     * @return Index of the worker
      */
-    public static DatagramPacket initReceiveDataConstraints() {
-        byte[] receiveData = new byte[1024];
-
-        return new DatagramPacket(receiveData, receiveData.length);
+    public static int workerIndex(int sessionId, int workers) {
+        // Mix the bits so sequential IDs still spread evenly
+        int hash = sessionId * 0x9E3779B9;
+        return (hash >>> 1) % workers;
     }
 
     /**
-     * Initialize send data packet
+     * Initialize receive data packet
      *
-     * @param windowSize Size of window to track packets
-     * @param packetsToDrop Number of packets to artifically drop
-     * @param currentSequence Current sequence number
-     * @param address Address of host to connect to
-     * @param portNumber Port number to connect to
-     * @throws java.net.UnknownHostException
-     * @return Initialized data packet
+     * @param pool Pool to take the packet from
+     * @return Initialized packet
      */
-    public static DatagramPacket initSendDataConstraints(byte windowSize, byte packetsToDrop, byte currentSequence,
-            InetAddress address, int portNumber) throws UnknownHostException {
-        byte[] sendData = {windowSize, packetsToDrop, currentSequence};
-
-        return new DatagramPacket(sendData, sendData.length, address, portNumber);
+    public static Datagram initReceiveDataConstraints(DatagramPool pool) {
+        return pool.acquire();
     }
 
     /**
-     * Initialize the window with the initial values
+     * Initialize send data packet. The ACK carries the cumulative ACK, the
+     * room the receiver has left and how long it held the ACK back, then the
+     * number of selective ACK blocks and each block as a pair of sequence
+     * numbers, the first received and the one just past it.
      *
-     * @param windowSize Size of window
+     * @param codec Codec to encode the ACK with
+     * @param sendData Buffer to encode the ACK into
+     * @param sessionId Session the packet belongs to
+     * @param cumulativeAck Next sequence number expected
+     * @param advertisedWindow Packets the receiver has room for
+     * @param ackDelay Nanoseconds since the last packet arrived
+     * @param sackBlocks Start/end pairs of blocks received past the
+     * cumulative ACK
+     * @param blocks Number of blocks
+     * @return Initialized data buffer, ready to be sent
      */
-    public static void initWindow(int windowSize) {
-        window = new String[windowSize];
-        for (int i = 0; i < windowSize; i++) {
-            window[i] = String.valueOf(i);
-        }
+    public static ByteBuffer initSendDataConstraints(PacketCodec codec, ByteBuffer sendData, int sessionId,
+            int cumulativeAck, int advertisedWindow, long ackDelay, int[] sackBlocks, int blocks) {
+        return codec.encodeAck(sendData, sessionId, cumulativeAck, advertisedWindow, ackDelay, sackBlocks, blocks);
     }
 
     /**
@@ -129,102 +187,7 @@ public class Receiver {
      * @param window
      * @return Formatted string
      */
-    public static String printWindow(String[] window) {
-        String concat = "[";
-
-        for (int i = 0; i < window.length; i++) {
-            concat += window[i] + ",";
-        }
-
-        return concat.subSequence(0, concat.length() - 1) + "]";
-    }
-
-    /**
-     * Shifts the window to the right by one
-     *
-     * @param window Window to shift
-     * @param sequenceNumber sequenceNumber to add
-     * @return Updated window
-     */
-    public static String[] shiftWindow(String[] window, int sequenceNumber) {
-        // Shift the window
-        for (int i = 0; i < window.length - 1; i++) {
-            window[i] = window[i + 1];
-        }
-        // Determine if we've hit the limit, and add the final value in accordingly
-        window[window.length - 1] = ((sequenceNumber >= sequenceNumberSize) || sequenceNumber < 0) ? "-" : String.valueOf(sequenceNumber);
-        return window;
-    }
-
-    /**
-     * Determines if a packet should be dropped, and if so, drops it.
-     *
-     * @param rcvPkt Received packet
-     * @return Whether the received packet should be artificially dropped
-     */
-    public static boolean shouldDropPacket(DatagramPacket rcvPkt) {
-        // Initialize which packets we will be dropping
-        if (numOfPacketsToDrop == -1) {
-            numOfPacketsToDrop = rcvPkt.getData()[1];
-            packetIndicesToDrop = new int[numOfPacketsToDrop];
-
-            Random rand = new Random();
-            int temp;
-            for (int i = 0; i < packetIndicesToDrop.length; i++) {
-                temp = rand.nextInt(rcvPkt.getData()[3] - 1);
-                while (arrayContains(packetIndicesToDrop, temp) != -1) {
-                    temp = rand.nextInt(rcvPkt.getData()[3] - 1);
-                }
-                packetIndicesToDrop[i] = temp;
-            }
-        }
-
-        int ret = arrayContains(packetIndicesToDrop, rcvPkt.getData()[2]);
-        if (ret != -1) {
-            packetIndicesToDrop[ret] = -1;
-            return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * Updates the window with the new given information
-     *
-     * @param window Current window to update
-     * @param sequenceNumber Sequence number to update
-     * @return Updated window
-     */
-    public static String[] updateWindow(String[] window, int sequenceNumber) {
-        int indexToUpdate = -1;
-        for (int i = 0; i < window.length; i++) {
-            if (window[i] == null || window[i].equals(String.valueOf(sequenceNumber)) || window[i].subSequence(0, window[i].length() - 1).equals(String.valueOf(sequenceNumber))) {
-                indexToUpdate = i;
-                break;
-            }
-        }
-
-        // ACKed
-        window[indexToUpdate] = String.valueOf(sequenceNumber) + "#";
-
-        // See if we're ready to shift the window.
-        int timesToShift = 0;
-        for (int i = 0; i < window.length; i++) {
-            if (window[i] != null && window[i].contains("#")) {
-                timesToShift++;
-            } else {
-                break;
-            }
-        }
-
-        // Shift the window timesToShift times
-        for (int i = 0; i < timesToShift; i++) {
-            shiftWindow(window, currentSequence);
-            currentSequence++;
-        }
-
-        System.out.println("Packet " + sequenceNumber + " is receieved, window " + printWindow(window));
-
-        return window;
+    public static String printWindow(SlidingWindow window) {
+        return window.toString();
     }
 }
@@ -0,0 +1,514 @@
+package receiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import protocol.ArqStrategy;
+import protocol.Clock;
+import protocol.Datagram;
+import protocol.EventLog;
+import protocol.Impairment;
+import protocol.IndexedLoss;
+import protocol.PacketCodec;
+import protocol.PacketFate;
+import protocol.RttEstimator;
+import protocol.SequenceNumber;
+import protocol.SlidingWindow;
+import protocol.Stripes;
+import protocol.TransportMetrics;
+import protocol.XorParity;
+
+/**
+ * State for a single transfer from one sender, keyed by the session ID the
+ * sender puts at the front of every packet. A session is only ever touched by
+ * the worker thread that owns it.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class Session {
+
+    // Delayed ACK policy: ACK after this many packets, or once the oldest
+    // unACKed packet has waited this long, whichever comes first
+    static final int ACK_EVERY = 8;
+    static final long ACK_DELAY = RttEstimator.MAX_ACK_DELAY;
+
+    // Most selective ACK blocks that fit in one ACK
+    static final int MAX_SACK_BLOCKS = PacketCodec.MAX_SACK_BLOCKS;
+
+    // Most a SYN may ask for. A session sets aside memory for its window,
+    // and for each group's parity within it, and picks every packet to drop
+    // up front, so an unchecked SYN could take the whole heap.
+    static final int MAX_WINDOW = 1 << 16, MAX_DROPS = 4096, MAX_STRIPES = 256;
+
+    // Largest segment, which the receiver's buffers are sized for. It is
+    // what fits in one 1500 byte Ethernet frame unless segment.max says
+    // otherwise, up to what fits in a UDP datagram.
+    static final int MAX_SEGMENT = Math.max(0, Math.min(Integer.getInteger("segment.max",
+            1472 - PacketCodec.MAX_HEADER_SIZE), PacketCodec.MAX_SEGMENT_SIZE));
+    static final long MAX_PACKETS = 1L << 40, MAX_PARITY_BYTES = 64L << 20;
+
+    final int sessionId;
+    final int windowSize;
+    final long sequenceNumberSize;
+    final SlidingWindow window;
+    final ArqStrategy arq;
+    final int ackEvery;
+    final int segmentSize;
+
+    // Stripe of its transfer the session carries, see Stripes
+    final int stripe, stripes;
+    FileSink sink;
+    final int[] sackBlocks = new int[2 * MAX_SACK_BLOCKS];
+    final ByteBuffer ack = ByteBuffer.allocateDirect(PacketCodec.MAX_ACK_SIZE);
+    SocketAddress senderAddress;
+
+    // Socket the sender sends to, which its ACKs must come from
+    int socket;
+    int packetsToDrop, pendingAcks, lastReceived, peakHeld;
+    long ackDeadline;
+
+    // Whether the session has an entry in its worker's delayed ACK queue
+    boolean ackQueued;
+    final Impairment drops;
+    final PacketFate fate = new PacketFate();
+    final Random random;
+    long lastActivity;
+    final EventLog log;
+    final TransportMetrics metrics;
+    final Clock clock;
+
+    // When each packet in the window arrived, by ring slot
+    final long[] arrived;
+
+    // Parity of the groups still missing packets, by group number modulo
+    // the number of slots, which covers every group a window can span
+    final int fecGroup;
+    long[] parityGroup;
+    int[] parityFirst, paritySize, parityLast;
+    ByteBuffer[] parity;
+    ByteBuffer repair;
+
+    /**
+     * Initialize window size and sequence size from the SYN that opens a
+     * transfer. If the sender is sending a file, it is written to
+     * session-&lt;ID&gt;.bin in the directory named by the output.dir property.
+     * The stripes of a striped transfer all write the file named after the
+     * transfer's ID.
+     *
+     * @param syn Codec holding the decoded SYN
+     * @param senderAddress Address and port of the sender
+     * @param log Log of the worker that owns the session
+     * @throws IOException If the output file cannot be created, or the SYN
+     * asks for more than a session may have or for an unknown ARQ strategy
+     */
+    public Session(PacketCodec syn, SocketAddress senderAddress, EventLog log) throws IOException {
+        this(syn, senderAddress, log, Receiver.metrics, Clock.SYSTEM);
+    }
+
+    /**
+     * Opens a session that counts into its own metrics and runs on its own
+     * clock, such as the virtual clock of a simulation
+     *
+     * @param syn Codec holding the decoded SYN
+     * @param senderAddress Address and port of the sender
+     * @param log Log of the worker that owns the session
+     * @param metrics Metrics to count into
+     * @param clock Clock to time packets with
+     * @throws IOException If the output file cannot be created, or the SYN
+     * asks for more than a session may have or for an unknown ARQ strategy
+     */
+    public Session(PacketCodec syn, SocketAddress senderAddress, EventLog log, TransportMetrics metrics, Clock clock)
+            throws IOException {
+        this.senderAddress = senderAddress;
+        this.log = log;
+        this.metrics = metrics;
+        this.clock = clock;
+        sessionId = syn.getSessionId();
+        checkSyn(syn);
+        windowSize = syn.getWindowSize();
+        packetsToDrop = syn.getPacketsToDrop();
+        stripe = syn.getStripe();
+        stripes = syn.getStripes();
+        sequenceNumberSize = Stripes.count(syn.getPacketCount(), stripe, stripes);
+        segmentSize = syn.getSegmentSize();
+        fecGroup = syn.getFecGroup();
+        try {
+            arq = ArqStrategy.forId(syn.getArq());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage());
+        }
+
+        // The sender's drop count picks packets out of the whole transfer.
+        // Set impair.seed to pick the same ones every run.
+        Long seed = Long.getLong("impair.seed");
+        random = seed != null ? new Random(seed ^ sessionId) : new Random();
+        drops = new IndexedLoss(packetsToDrop, Math.max(1, sequenceNumberSize - 1));
+        window = new SlidingWindow(arq.getReceiveWindow(windowSize), sequenceNumberSize);
+        arrived = new long[window.getCapacity()];
+        if (segmentSize > 0) {
+            File path = new File(System.getProperty("output.dir", "."),
+                    "session-" + Integer.toHexString(Stripes.transferOf(sessionId, stripe)) + ".bin");
+            sink = stripes > 1 ? FileSink.openShared(path, segmentSize, syn.getPacketCount())
+                    : new FileSink(path, segmentSize, sequenceNumberSize);
+        }
+
+        if (fecGroup > 0) {
+            initParity(windowSize / fecGroup + 2);
+        }
+
+        // Never hold back so many ACKs that the sender's window stalls
+        ackEvery = Math.max(1, Math.min(ACK_EVERY, windowSize / 4));
+    }
+
+    /**
+     * Checks that a SYN asks for no more than a session may have, before
+     * anything is set aside for it
+     *
+     * @param syn Codec holding the decoded SYN
+     * @throws IOException If a field is out of bounds
+     */
+    static void checkSyn(PacketCodec syn) throws IOException {
+        int window = syn.getWindowSize(), segment = syn.getSegmentSize(), group = syn.getFecGroup();
+        long packets = syn.getPacketCount();
+        if (window < 1 || window > MAX_WINDOW) {
+            throw new IOException("Bad window size " + window);
+        }
+        if (packets < 0 || packets > MAX_PACKETS) {
+            throw new IOException("Bad packet count " + packets);
+        }
+        if (syn.getPacketsToDrop() < 0 || syn.getPacketsToDrop() > MAX_DROPS) {
+            throw new IOException("Bad number of packets to drop " + syn.getPacketsToDrop());
+        }
+        if (segment < 0 || segment > MAX_SEGMENT) {
+            throw new IOException("Bad segment size " + segment);
+        }
+        if (group < 0 || group > window || group > 0 && (long) (window / group + 2) * segment > MAX_PARITY_BYTES) {
+            throw new IOException("Bad FEC group " + group);
+        }
+        if (syn.getStripes() < 1 || syn.getStripes() > MAX_STRIPES || syn.getStripe() < 0
+                || syn.getStripe() >= syn.getStripes()) {
+            throw new IOException("Bad stripe " + syn.getStripe() + " of " + syn.getStripes());
+        }
+    }
+
+    /**
+     * Handles a data packet and decides when it should be ACKed. Packets
+     * that arrive out of order, duplicates and the last packet of the
+     * transfer are ACKed straight away so the sender learns about holes
+     * quickly; in-order packets are coalesced.
+     *
+     * @param rcvPkt Received packet
+     * @param header Codec holding the packet's decoded header
+     * @return Whether an ACK should be sent right away
+     */
+    public boolean receive(Datagram rcvPkt, PacketCodec header) {
+        int sequenceNumber = Stripes.fromWire(header.getSequenceNumber(), window.getBase(), stripe, stripes);
+        if (Stripes.toWire(sequenceNumber, stripe, stripes) != header.getSequenceNumber()) {
+            // Another stripe's packet, which is no more use than a corrupt one
+            metrics.onDrop();
+            return false;
+        }
+
+        lastReceived = sequenceNumber;
+        senderAddress = rcvPkt.address;
+        socket = rcvPkt.socket;
+        lastActivity = clock.nanoTime();
+        metrics.onPacketReceived();
+
+        if (shouldDropPacket()) {
+            metrics.onDrop();
+            log.log(EventLog.PACKET_DROPPED, sessionId, sequenceNumber);
+            return false;
+        }
+
+        if (window.isAcked(sequenceNumber)) {
+            metrics.onDuplicate();
+        } else if (!window.contains(sequenceNumber)) {
+            // Past the window there is nowhere to keep it, so it is lost as
+            // surely as if the network had dropped it
+            metrics.onDrop();
+        }
+
+        boolean inOrder = sequenceNumber == window.getBase();
+        if (!deliver(rcvPkt, sequenceNumber, header.getPayloadOffset())) {
+            return false;
+        }
+        updateWindow(sequenceNumber);
+
+        // A session still queued keeps its place, and so its deadline, or
+        // the queue would fall out of deadline order
+        if (pendingAcks++ == 0 && !ackQueued) {
+            ackDeadline = lastActivity + ACK_DELAY;
+        }
+
+        // This packet may leave its group one short of being rebuilt
+        boolean recovered = false;
+        if (fecGroup > 0) {
+            int slot = (int) (window.indexOf(sequenceNumber) / fecGroup % parityGroup.length);
+            recovered = parityGroup[slot] == window.indexOf(sequenceNumber) / fecGroup && recover(slot);
+        }
+
+        // Anything left past the start of the window means there is a hole
+        boolean hole = window.getBase() != window.getNext();
+        return !inOrder || hole || recovered || pendingAcks >= ackEvery || header.isAckRequested()
+                || allPacketsReceived();
+    }
+
+    /**
+     * Sets aside room for the parity of a number of groups at once
+     *
+     * @param slots Number of groups
+     */
+    private void initParity(int slots) {
+        parityGroup = new long[slots];
+        parityFirst = new int[slots];
+        paritySize = new int[slots];
+        parityLast = new int[slots];
+        Arrays.fill(parityGroup, -1);
+        if (segmentSize > 0) {
+            parity = new ByteBuffer[slots];
+            for (int i = 0; i < slots; i++) {
+                parity[i] = ByteBuffer.allocateDirect(segmentSize);
+            }
+            repair = ByteBuffer.allocateDirect(segmentSize);
+        }
+    }
+
+    /**
+     * Handles a parity packet. If exactly one packet of its group is missing
+     * it is rebuilt at once, otherwise the parity is kept until all but one
+     * have arrived.
+     *
+     * @param rcvPkt Received packet
+     * @param header Codec holding the packet's decoded header
+     * @return Whether a packet was rebuilt, and an ACK should be sent right
+     * away
+     */
+    public boolean receiveParity(Datagram rcvPkt, PacketCodec header) {
+        int first = Stripes.fromWire(header.getSequenceNumber(), window.getBase(), stripe, stripes);
+        int size = header.getGroupSize();
+        if (Stripes.toWire(first, stripe, stripes) != header.getSequenceNumber()) {
+            return false;
+        }
+
+        senderAddress = rcvPkt.address;
+        socket = rcvPkt.socket;
+        lastActivity = clock.nanoTime();
+        // Parity of a group the window has already passed is of no use
+        if (fecGroup <= 0 || size <= 0 || size > fecGroup
+                || SequenceNumber.lessThan(first + size - 1, window.getBase())) {
+            return false;
+        }
+
+        long group = window.indexOf(first) / fecGroup;
+        int slot = (int) (group % parityGroup.length);
+        parityGroup[slot] = group;
+        parityFirst[slot] = first;
+        paritySize[slot] = size;
+        parityLast[slot] = header.getLastLength();
+        if (parity != null) {
+            rcvPkt.buffer.position(header.getPayloadOffset());
+            parity[slot].clear();
+            parity[slot].put(rcvPkt.buffer).flip();
+        }
+        return recover(slot);
+    }
+
+    /**
+     * Rebuilds the one packet missing from a group, if only one is
+     *
+     * @param slot Slot holding the group's parity
+     * @return Whether a packet was rebuilt
+     */
+    private boolean recover(int slot) {
+        int first = parityFirst[slot], size = paritySize[slot], missing = 0, lost = 0;
+        for (int i = 0; i < size; i++) {
+            if (!window.isAcked(first + i)) {
+                lost = first + i;
+                missing++;
+            }
+        }
+        if (missing != 1) {
+            // Nothing left to rebuild, or not yet
+            if (missing == 0) {
+                parityGroup[slot] = -1;
+            }
+            return false;
+        }
+
+        if (sink != null) {
+            try {
+                // The parity padded with zeros, XORed with every segment we
+                // have, leaves the segment we do not
+                ByteBuffer payload = parity[slot].duplicate();
+                repair.clear();
+                repair.put(payload);
+                XorParity.clear(repair, payload.limit(), segmentSize - payload.limit());
+                for (int i = 0; i < size; i++) {
+                    if (first + i != lost) {
+                        XorParity.xor(repair, 0, sink.segment(segmentIndex(window.indexOf(first + i))));
+                    }
+                }
+                repair.limit(lost == first + size - 1 ? parityLast[slot] : segmentSize).position(0);
+                sink.write(segmentIndex(window.indexOf(lost)), repair);
+            } catch (IOException ex) {
+                // The sender will resend it
+                System.out.println("Session " + sessionId + ": Could not rebuild packet " + SequenceNumber.toString(lost) + ": " + ex);
+                return false;
+            }
+        }
+
+        parityGroup[slot] = -1;
+        metrics.onRecovered();
+        updateWindow(lost);
+        log.log(EventLog.PACKET_RECOVERED, sessionId, lost, window.getBase(), window.getNext(), 0);
+        return true;
+    }
+
+    /**
+     * Writes a packet's data straight into its place in the output file.
+     * Duplicates of packets we already have are not written again.
+     *
+     * @param rcvPkt Received packet
+     * @param sequenceNumber Sequence number of the packet
+     * @param payloadOffset Position of the file data in the packet
+     * @return Whether the packet may be ACKed
+     */
+    public boolean deliver(Datagram rcvPkt, int sequenceNumber, int payloadOffset) {
+        if (sink == null || !window.contains(sequenceNumber) || window.isAcked(sequenceNumber)) {
+            return true;
+        }
+
+        try {
+            rcvPkt.buffer.position(payloadOffset);
+            sink.write(segmentIndex(window.indexOf(sequenceNumber)), rcvPkt.buffer);
+            return true;
+        } catch (IOException ex) {
+            // Leave it unACKed so the sender tries again
+            metrics.onDrop();
+            System.out.println("Session " + sessionId + ": Could not write packet " + SequenceNumber.toString(sequenceNumber) + ": " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * @param index Index of a packet within the session
+     * @return Index of its segment in the output file
+     */
+    public long segmentIndex(long index) {
+        return Stripes.segmentOf(index, stripe, stripes);
+    }
+
+    /**
+     * Finishes the output file, if there is one. The file of a striped
+     * transfer is finished by the last of its stripes to close.
+     */
+    public void close() {
+        if (sink == null) {
+            return;
+        }
+
+        try {
+            if (sink.close()) {
+                System.out.println("Session " + sessionId + ": Wrote " + sink.getSize() + " bytes to " + sink.getPath());
+            }
+        } catch (IOException ex) {
+            System.out.println("Session " + sessionId + ": Could not finish " + sink.getPath() + ": " + ex);
+        }
+        sink = null;
+    }
+
+    /**
+     * @return Whether packets are waiting to be ACKed
+     */
+    public boolean hasPendingAcks() {
+        return pendingAcks > 0;
+    }
+
+    /**
+     * @return Most packets held at once past the first one missing
+     */
+    public int getPeakHeld() {
+        return peakHeld;
+    }
+
+    /**
+     * @return Time by which the packets waiting to be ACKed must be
+     */
+    public long getAckDeadline() {
+        return ackDeadline;
+    }
+
+    /**
+     * Builds an ACK covering everything received so far: the next sequence
+     * number expected, plus the blocks received beyond it, and how many more
+     * packets the sender may have in flight. It also says how long it was
+     * held back since the last packet arrived, so the sender can take that
+     * out of its round trip samples.
+     *
+     * @param codec Codec to encode the ACK with
+     * @param room Packets that may still wait for the session's worker
+     * @return ACK to send back, valid until the next call
+     */
+    public ByteBuffer buildAck(PacketCodec codec, int room) {
+        pendingAcks = 0;
+        int blocks = arq.getAckBlocks(window, lastReceived, sackBlocks, MAX_SACK_BLOCKS);
+        for (int i = 0; i < 2 * blocks; i++) {
+            sackBlocks[i] = Stripes.toWire(sackBlocks[i], stripe, stripes);
+        }
+
+        return Receiver.initSendDataConstraints(codec, ack, sessionId, Stripes.toWire(window.getBase(), stripe, stripes),
+                room, clock.nanoTime() - lastActivity, sackBlocks, blocks);
+    }
+
+    /**
+     * Determines if all packets have been successfully received
+     *
+     * @return Whether all packets have been received
+     */
+    public boolean allPacketsReceived() {
+        return window.isComplete();
+    }
+
+    /**
+     * Determines if a packet should be dropped, and if so, drops it. Packets
+     * are picked by the order they arrive in, not their sequence numbers,
+     * so the resend of a dropped packet gets through.
+     *
+     * @return Whether the received packet should be artificially dropped
+     */
+    public boolean shouldDropPacket() {
+        fate.reset();
+        drops.apply(fate, 0, lastActivity, random);
+        return fate.dropped;
+    }
+
+    /**
+     * Updates the window with the new given information
+     *
+     * @param sequenceNumber Sequence number to update
+     */
+    public void updateWindow(int sequenceNumber) {
+        // ACKed, the window slides past any leading received packets.
+        // Duplicates of packets we already have are simply re-ACKed.
+        int base = window.getBase();
+        long delivered = window.getDelivered();
+        if (window.contains(sequenceNumber) && !window.isAcked(sequenceNumber)) {
+            arrived[window.slotOf(sequenceNumber)] = lastActivity;
+        }
+        window.markAcked(sequenceNumber);
+        peakHeld = Math.max(peakHeld, SequenceNumber.distance(window.getBase(), window.getNext()));
+
+        // Time from arriving to being passed on in order, which is how long
+        // a packet waits for the holes in front of it to be filled
+        for (long i = 0, slid = window.getDelivered() - delivered; i < slid; i++) {
+            metrics.recordTimeInWindow(lastActivity - arrived[window.slotOf(base + (int) i)]);
+        }
+
+        log.log(EventLog.PACKET_RECEIVED, sessionId, sequenceNumber, window.getBase(), window.getNext(), 0);
+    }
+}
@@ -0,0 +1,282 @@
+package receiver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import protocol.Datagram;
+import protocol.DatagramPool;
+import protocol.EventLog;
+import protocol.ImpairmentEngine;
+import protocol.PacketCodec;
+
+/**
+ * Processes the packets of every session that hashes to it. Sessions never
+ * move between workers, so a worker owns its sessions outright and needs no
+ * locking; the only shared structure is the queue packets arrive on.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SessionWorker implements Runnable {
+
+    // How long a session may sit idle before it is forgotten. Finished
+    // sessions linger this long so late duplicates are still re-ACKed.
+    static final long SESSION_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    final BlockingQueue<Datagram> queue;
+    final Map<Integer, Session> sessions = new HashMap<Integer, Session>();
+
+    // Sessions still receiving, which share the room left in the queue
+    int active;
+
+    // Sessions holding back ACKs, each at most once. The ACK delay is the
+    // same for every session, so this is always in deadline order. An ACK
+    // sent straight away leaves its session's entry behind, to be dropped
+    // when it comes up.
+    final ArrayDeque<Session> delayedAcks = new ArrayDeque<Session>();
+    final DatagramChannel[] senderChannels;
+    final DatagramPool pool;
+    final PacketCodec codec = new PacketCodec();
+    final ByteBuffer reject = ByteBuffer.allocateDirect(PacketCodec.MIN_PACKET_SIZE);
+
+    // Events of this worker's sessions, printed off this thread
+    final EventLog log = new EventLog(Integer.getInteger("log.capacity", 65536));
+
+    // Emulated network in front of the sessions, or null for none
+    final ImpairmentEngine impairment;
+
+    /**
+     * @param senderChannels Channels to send ACKs on, shared with the receive
+     * loops. A session is answered on the channel its packets arrive on.
+     * @param pool Pool handled packets go back to
+     * @param queueSize Number of packets that may wait for this worker
+     * @param impairment Impairments to put incoming packets through, or null
+     */
+    public SessionWorker(DatagramChannel[] senderChannels, DatagramPool pool, int queueSize,
+            ImpairmentEngine impairment) {
+        this.senderChannels = senderChannels;
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<Datagram>(queueSize);
+        this.impairment = impairment;
+    }
+
+    /**
+     * Hands a packet to the worker, dropping it if the worker is backed up
+     *
+     * @param rcvPkt Received packet
+     * @return Whether the packet was queued
+     */
+    public boolean offer(Datagram rcvPkt) {
+        return queue.offer(rcvPkt);
+    }
+
+    @Override
+    public void run() {
+        long lastSweep = System.nanoTime();
+
+        while (true) {
+            // Sleep until the next packet, the next delayed ACK or the next
+            // held back packet is due
+            long timeout = TimeUnit.SECONDS.toNanos(1), now = System.nanoTime();
+            if (!delayedAcks.isEmpty()) {
+                timeout = delayedAcks.peekFirst().ackDeadline - now;
+            }
+            if (impairment != null) {
+                timeout = Math.min(timeout, impairment.timeUntilNext(now));
+            }
+
+            Datagram rcvPkt;
+            try {
+                rcvPkt = queue.poll(timeout, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (rcvPkt != null && impairment != null) {
+                impairment.offer(rcvPkt, System.nanoTime());
+            } else if (rcvPkt != null) {
+                handlePacket(rcvPkt);
+                pool.release(rcvPkt);
+            }
+            releaseImpaired();
+            sendDelayedAcks();
+
+            if (System.nanoTime() - lastSweep > SESSION_TIMEOUT) {
+                removeIdleSessions();
+                lastSweep = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Routes a packet to its session. A SYN opens the session, or is simply
+     * answered again if its SYN-ACK was lost. Corrupt packets, and data for
+     * sessions we never saw a SYN for, are dropped; the sender will resend.
+     * A packet that trips up its session is dropped too, rather than taking
+     * the worker, and every other session it owns, down with it.
+     *
+     * @param rcvPkt Received packet
+     */
+    public void handlePacket(Datagram rcvPkt) {
+        try {
+            routePacket(rcvPkt);
+        } catch (RuntimeException ex) {
+            Receiver.metrics.onDrop();
+            System.out.println("Session " + codec.getSessionId() + ": " + ex);
+        }
+    }
+
+    private void routePacket(Datagram rcvPkt) {
+        if (!codec.decode(rcvPkt.buffer)) {
+            Receiver.metrics.onDrop();
+            return;
+        }
+
+        int sessionId = codec.getSessionId();
+        Session session = sessions.get(sessionId);
+        if (codec.getType() == PacketCodec.SYN) {
+            if (session == null) {
+                try {
+                    session = new Session(codec, rcvPkt.address, log);
+                    session.socket = rcvPkt.socket;
+                } catch (IOException ex) {
+                    System.out.println("Session " + sessionId + ": " + ex);
+                    sendReject(sessionId, rcvPkt);
+                    return;
+                }
+                sessions.put(sessionId, session);
+                active++;
+            }
+            session.lastActivity = System.nanoTime();
+            sendSynAck(session, rcvPkt);
+            return;
+        }
+        if ((codec.getType() != PacketCodec.DATA && codec.getType() != PacketCodec.PARITY) || session == null) {
+            return;
+        }
+
+        boolean wasComplete = session.allPacketsReceived();
+        boolean ackNow = codec.getType() == PacketCodec.DATA ? session.receive(rcvPkt, codec)
+                : session.receiveParity(rcvPkt, codec);
+        if (ackNow) {
+            sendAck(session);
+        } else if (session.hasPendingAcks() && !session.ackQueued) {
+            session.ackQueued = true;
+            delayedAcks.addLast(session);
+        }
+
+        if (!wasComplete && session.allPacketsReceived()) {
+            log.log(EventLog.TRANSFER_DONE, sessionId, 0);
+            session.close();
+            active--;
+        }
+    }
+
+    /**
+     * Handles the packets the impairment engine has finished holding back
+     */
+    public void releaseImpaired() {
+        if (impairment == null) {
+            return;
+        }
+
+        Datagram rcvPkt;
+        while ((rcvPkt = impairment.poll(System.nanoTime())) != null) {
+            handlePacket(rcvPkt);
+            pool.release(rcvPkt);
+        }
+    }
+
+    /**
+     * Sends the ACKs whose delay has run out, and drops the entries of
+     * sessions that have been ACKed since they were queued
+     */
+    public void sendDelayedAcks() {
+        long now = System.nanoTime();
+        while (!delayedAcks.isEmpty()) {
+            Session session = delayedAcks.peekFirst();
+            if (session.hasPendingAcks() && session.ackDeadline - now > 0) {
+                break;
+            }
+
+            delayedAcks.pollFirst();
+            session.ackQueued = false;
+            if (session.hasPendingAcks()) {
+                sendAck(session);
+            }
+        }
+    }
+
+    /**
+     * Sends an ACK for everything a session has received. The ACK
+     * advertises the session's share of the room left in the queue, so a
+     * worker that falls behind slows its senders down before it has to drop
+     * their packets.
+     *
+     * @param session Session to ACK
+     */
+    public void sendAck(Session session) {
+        try {
+            int room = queue.remainingCapacity() / Math.max(1, active);
+            senderChannels[session.socket].send(session.buildAck(codec, room), session.senderAddress);
+            Receiver.metrics.onAck();
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Accepts a session by answering its SYN
+     *
+     * @param session Session being accepted
+     * @param syn Received SYN
+     */
+    public void sendSynAck(Session session, Datagram syn) {
+        try {
+            senderChannels[syn.socket].send(codec.encodeSynAck(session.ack, session.sessionId), syn.address);
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Refuses a session, so its sender gives up rather than resending the
+     * SYN until it times out
+     *
+     * @param sessionId Session being refused
+     * @param syn Received SYN
+     */
+    public void sendReject(int sessionId, Datagram syn) {
+        try {
+            senderChannels[syn.socket].send(codec.encodeReject(reject, sessionId), syn.address);
+        } catch (IOException ex) {
+        }
+    }
+
+    /**
+     * Forgets sessions that have not seen a packet for a while
+     */
+    public void removeIdleSessions() {
+        long now = System.nanoTime();
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            Session session = it.next();
+            if (now - session.lastActivity > SESSION_TIMEOUT) {
+                // Whatever arrived of an abandoned transfer is kept
+                if (!session.allPacketsReceived()) {
+                    active--;
+                }
+                if (session.ackQueued) {
+                    delayedAcks.remove(session);
+                }
+                session.close();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package sender;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped file to send, cut into fixed size segments. Segment i covers
+ * bytes [i * segmentSize, (i + 1) * segmentSize) of the file, and only the
+ * last one may be short. Segments are handed out as views straight onto the
+ * mapped pages, so the only copy is the one the kernel makes into the socket.
+ *
+ * Files larger than a single mapping are mapped lazily in regions that hold
+ * a whole number of segments, so no segment ever straddles two regions.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class FileSource {
+
+    // Largest region mapped at once, rounded down to whole segments
+    static final long MAX_REGION_SIZE = 1L << 30;
+
+    final RandomAccessFile file;
+    final FileChannel fileChannel;
+    final long size, segmentCount, segmentsPerRegion;
+    final int segmentSize;
+    final ByteBuffer[] regions;
+
+    /**
+     * @param path File to send
+     * @param segmentSize Bytes of file data per packet
+     * @throws IOException
+     */
+    public FileSource(File path, int segmentSize) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        this.fileChannel = file.getChannel();
+        this.size = fileChannel.size();
+        this.segmentSize = segmentSize;
+        this.segmentCount = Math.max(1, (size + segmentSize - 1) / segmentSize);
+        this.segmentsPerRegion = MAX_REGION_SIZE / segmentSize;
+        this.regions = new ByteBuffer[(int) ((segmentCount + segmentsPerRegion - 1) / segmentsPerRegion)];
+    }
+
+    /**
+     * @return Size of the file, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of segments, and so packets, in the file
+     */
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return Bytes of file data per packet
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * View of one segment of the file. The view is shared by every segment
+     * in the same region, so it is only valid until the next call.
+     *
+     * @param index Segment index
+     * @return Buffer positioned over the segment
+     * @throws IOException
+     */
+    public ByteBuffer segment(long index) throws IOException {
+        int region = (int) (index / segmentsPerRegion);
+        if (regions[region] == null) {
+            long start = region * segmentsPerRegion * segmentSize;
+            long length = Math.min(segmentsPerRegion * segmentSize, size - start);
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            regions[region] = mapped;
+        }
+
+        ByteBuffer view = regions[region];
+        int offset = (int) ((index % segmentsPerRegion) * segmentSize);
+        view.limit(Math.min(offset + segmentSize, view.capacity()));
+        view.position(Math.min(offset, view.limit()));
+        return view;
+    }
+
+    /**
+     * Releases the file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,181 @@
+package sender;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import protocol.ConcurrentHistogram;
+import protocol.EventLog;
+import protocol.Histogram;
+import protocol.TransportMetrics;
+
+/**
+ * Drives many transfers at once against one receiver, to see how it holds
+ * up under load. Every session gets its own ephemeral port and random
+ * session ID, and runs on a thread of its own from a pool, so up to
+ * loadgen.concurrency sessions are in flight at a time. Each session needs a
+ * few file descriptors, so raise the open file limit for thousands.
+ *
+ * Settings are system properties:
+ *
+ * <pre>
+ * loadgen.sessions     transfers to run
+ * loadgen.concurrency  transfers in flight at once (sessions, at most 256)
+ * loadgen.timeout      seconds before a transfer is given up on (60)
+ * window.size          window of every transfer (64)
+ * packets              packets per transfer, if there is no file (1000)
+ * congestion           congestion control algorithm (reno)
+ * fec.group            data packets per parity packet, 0 for none (0)
+ * arq                  ARQ strategy, gbn, sr or sack (sack)
+ * pacing               on or off, and pacing.gain and pacing.burst, as for
+ *                      the Sender (on)
+ * so.sndbuf, so.rcvbuf socket buffer sizes of every session, in bytes
+ * log.level            as for the Sender, but "info" by default
+ * </pre>
+ *
+ * If a file is given every session sends the whole of it.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class LoadGenerator {
+
+    // Sessions hold little on the stack, so many threads stay cheap
+    static final long STACK_SIZE = 256 * 1024;
+
+    static final TransportMetrics metrics = new TransportMetrics();
+    static final ConcurrentHistogram completion = new ConcurrentHistogram();
+    static final AtomicLong bytes = new AtomicLong(), packets = new AtomicLong();
+    static final AtomicInteger completed = new AtomicInteger(), failed = new AtomicInteger();
+
+    // One log per pool thread, as a log only takes one writer
+    static final ThreadLocal<EventLog> logs = new ThreadLocal<EventLog>() {
+        @Override
+        protected EventLog initialValue() {
+            return new EventLog(Integer.getInteger("log.capacity", 4096),
+                    EventLog.parseLevel(System.getProperty("log.level", "info")));
+        }
+    };
+
+    /**
+     * @param args the command line arguments. If a file is given every
+     * session sends it.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        final int sessions = Integer.getInteger("loadgen.sessions", 100);
+        int concurrency = Integer.getInteger("loadgen.concurrency", Math.min(sessions, 256));
+        final long timeout = TimeUnit.SECONDS.toNanos(Long.getLong("loadgen.timeout", 60L));
+        final int windowSize = Integer.getInteger("window.size", 64);
+        final long packetCount = Long.getLong("packets", 1000L);
+        final String algorithm = System.getProperty("congestion", "reno");
+        final SocketAddress receiverAddress = Sender.getReceiverAddress();
+        final File file = args.length > 0 ? new File(args[0]) : null;
+
+        metrics.export("loadgen");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(null, task, "sender-session-" + count.getAndIncrement(), STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        System.out.println("Running " + sessions + " sessions, " + concurrency + " at a time");
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runSession(receiverAddress, file, windowSize, packetCount, algorithm, timeout);
+                }
+            });
+        }
+
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+            }
+        } catch (InterruptedException ex) {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        EventLog.flush();
+        printSummary(sessions, seconds);
+        metrics.stopDump();
+        System.exit(failed.get() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Runs one transfer and adds its outcome to the totals
+     *
+     * @param receiverAddress Where the receiver is listening
+     * @param file File to send, or null
+     * @param windowSize Window size
+     * @param packetCount Packets to send, if there is no file
+     * @param algorithm Congestion control algorithm
+     * @param timeout Longest the transfer may take, in nanoseconds
+     */
+    public static void runSession(SocketAddress receiverAddress, File file, int windowSize, long packetCount,
+            String algorithm, long timeout) {
+        FileSource source = null;
+        try {
+            if (file != null) {
+                source = new FileSource(file, Sender.SEGMENT_SIZE);
+            }
+            SenderSession session = new SenderSession(receiverAddress, source, windowSize, packetCount, 0, algorithm,
+                    metrics, logs.get());
+            session.setFecGroup(Integer.getInteger("fec.group", 0));
+            session.initArq(System.getProperty("arq", "sack"));
+            session.setPacer(Sender.initPacer());
+
+            if (session.run(timeout)) {
+                completed.incrementAndGet();
+                completion.record(session.getElapsed());
+                bytes.addAndGet(session.getBytes());
+                packets.addAndGet(session.getPacketCount());
+            } else {
+                failed.incrementAndGet();
+            }
+        } catch (IOException ex) {
+            failed.incrementAndGet();
+            System.out.println("Session failed: " + ex);
+        } finally {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the totals on one line, for scripts to pick up, followed by
+     * the combined transport metrics
+     *
+     * @param sessions Number of sessions started
+     * @param seconds Time from the first session starting to the last one
+     * finishing
+     */
+    public static void printSummary(int sessions, double seconds) {
+        Histogram times = completion.snapshot();
+        System.out.printf(Locale.ROOT, "Load: sessions=%d completed=%d failed=%d seconds=%.3f goodput_mbps=%.3f "
+                + "packets_per_second=%.1f completion_p50_ms=%.2f completion_p90_ms=%.2f completion_p99_ms=%.2f "
+                + "completion_max_ms=%.2f%n",
+                sessions, completed.get(), failed.get(), seconds, bytes.get() * 8 / seconds / 1e6, packets.get() / seconds,
+                times.getPercentile(50) / 1e6, times.getPercentile(90) / 1e6, times.getPercentile(99) / 1e6,
+                times.getMax() / 1e6);
+        System.out.println("Metrics: " + metrics);
+    }
+}
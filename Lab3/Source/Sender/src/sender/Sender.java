@@ -1,14 +1,19 @@
 package sender;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Locale;
 import java.util.Scanner;
-import java.util.Timer;
-import java.util.TimerTask;
+import protocol.DatagramPool;
+import protocol.EventLog;
+import protocol.Histogram;
+import protocol.ImpairmentEngine;
+import protocol.Pacer;
+import protocol.PacketCodec;
+import protocol.TransportMetrics;
 
 /**
  * @date 09/30/2015
@@ -16,293 +21,167 @@ import java.util.TimerTask;
  */
 public class Sender {
 
-    static byte windowSize, packetsToDrop, sequenceNumberSize, currentSequence = 0;
-    static DatagramPacket sendPkt, rcvPkt;
-    static long[] timers;
+    // Bytes of file data carried by each packet, sized to stay under a
+    // typical 1500 byte MTU once the UDP/IP headers are added
+    static final int SEGMENT_SIZE = Integer.getInteger("segment.size", 1400);
+
+    static int windowSize, packetsToDrop;
+    static long sequenceNumberSize;
     InetAddress IPAddress;
-    static Timer timer = new Timer();
-    static byte resendIndex = -1;
-    static String[] window;
+    static SocketAddress receiverAddress;
+    static FileSource source;
+
+    // Transfer statistics, also exported over JMX
+    static final TransportMetrics metrics = new TransportMetrics();
+
+    // Events are formatted and printed off the sending thread, see EventLog
+    static final EventLog log = new EventLog(Integer.getInteger("log.capacity", 65536));
     int port;
 
     /**
-     * @param args the command line arguments
-     * @throws java.net.SocketException
-     * @throws java.net.UnknownHostException
+     * @param args the command line arguments. If a file is given it is sent
+     * to the receiver, otherwise only sequence numbers are sent. Set the
+     * impair property to put outgoing packets through an emulated network
+     * (see ImpairmentEngine), and impair.seed to repeat a run exactly. The
+     * receiver is found at receiver.host and receiver.port, and the prompts
+     * are skipped for any of window.size, packets and drops that are set.
+     * Metrics are exported over JMX, and dumped to metrics.file if it is
+     * set (see TransportMetrics). Set log.level to info or off to keep the
+     * per-packet events out of the console (see EventLog). Set fec.group
+     * to send a parity packet after every that many data packets (see
+     * XorParity), and arq to gbn, sr or sack (the default) to pick how lost
+     * packets are recovered (see ArqStrategy). New packets are spread over
+     * the round trip (see Pacer) unless pacing is off; pacing.gain and
+     * pacing.burst tune it. so.sndbuf and so.rcvbuf size the socket's
+     * buffers (see SocketBuffers). Setting loadgen.sessions runs that many
+     * transfers at once instead (see LoadGenerator), and setting stripes
+     * splits the transfer across that many sockets and threads (see
+     * StripedTransfer).
+     * @throws java.io.IOException
      */
-    public static void main(String[] args) throws SocketException, UnknownHostException, IOException {
-        final DatagramSocket senderSocket = new DatagramSocket(9877),
-                receiverSocket = new DatagramSocket(9879);
-
-        // Track timers on each packet, and resend them if they time out
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                // Don't want to run this logic before everything is initialized
-                // or after packet transfer has completed
-                if (window == null || allPacketsDelivered(window)) {
-                    return;
-                }
+    public static void main(String[] args) throws IOException {
+        if (Integer.getInteger("loadgen.sessions", 0) > 0) {
+            LoadGenerator.main(args);
+            return;
+        }
+        if (Integer.getInteger("stripes", 1) > 1) {
+            StripedTransfer.main(args);
+            return;
+        }
 
-                resendIndex = needToResendPacket();
-                if (resendIndex != -1) {
-                    try {
-                        sendPkt = initSendDataConstraints(resendIndex, "localhost", 9876);
-                    } catch (UnknownHostException ex) {
-                    }
-                    try {
-                        resendPacket(senderSocket, window, resendIndex);
-                    } catch (IOException ex) {
-                    }
-                }
-            }
-        }, 50, 50);
+        receiverAddress = getReceiverAddress();
+        if (args.length > 0) {
+            source = new FileSource(new File(args[0]), SEGMENT_SIZE);
+        }
 
         initData();
-        while (!allPacketsDelivered(window)) {
-            if (canSendPacket(window)) {
-                sendPkt = initSendDataConstraints(currentSequence, "localhost", 9876);
-                sendPacket(senderSocket, window);
-            } else {
-                rcvPkt = initReceiveDataConstraints();
-                receiverSocket.receive(rcvPkt);
-                window = updateWindow(window, rcvPkt.getData()[2], true);
-            }
+        SenderSession session = new SenderSession(receiverAddress, source, windowSize, sequenceNumberSize, packetsToDrop,
+                System.getProperty("congestion", "reno"), metrics, log);
+        ImpairmentEngine impairment = null;
+        if (System.getProperty("impair") != null) {
+            DatagramPool pool = new DatagramPool(PacketCodec.MAX_HEADER_SIZE + SEGMENT_SIZE, 1024);
+            impairment = new ImpairmentEngine(System.getProperty("impair"), Long.getLong("impair.seed", System.nanoTime()),
+                    pool);
+            session.setImpairment(impairment, pool);
         }
+        session.setFecGroup(Integer.getInteger("fec.group", 0));
+        session.initArq(System.getProperty("arq", "sack"));
+        session.setPacer(initPacer());
+        metrics.export("sender");
 
-        System.out.println("All packets have been successfully delivered.");
-        System.exit(0);
-    }
+        session.run(Long.MAX_VALUE);
 
-    /**
-     * Determines if all packets have been successfully delivered
-     *
-     * @param window Current window
-     * @return Whether all packets have been delivered
-     */
-    public static boolean allPacketsDelivered(String[] window) {
-        for (int i = 0; i < window.length; i++) {
-            // Check if our String contains a number... if it does, not all
-            // packets have been ACKed
-            if (window[i] == null || window[i].matches(".*\\d+.*")) {
-                return false;
-            }
+        EventLog.flush();
+        System.out.println("All packets have been successfully delivered.");
+        double seconds = session.getElapsed() / 1e9;
+        long bytes = session.getBytes();
+        if (source != null) {
+            System.out.printf("Sent %d bytes in %.3f s (%.2f Mbit/s)%n", bytes, seconds, bytes * 8 / seconds / 1e6);
+            source.close();
         }
-        return true;
-    }
-
-    /**
-     * Checks if we are in a position to send a new packet
-     *
-     * @param window Current window
-     * @return Whether we are ready to send a new packet
-     */
-    public static boolean canSendPacket(String[] window) {
-        for (int i = 0; i < window.length; i++) {
-            if (window[i] == null || (!window[i].equals("-") && !window[i].contains("*") && !window[i].contains("#"))) {
-                return true;
-            }
+        printSummary(bytes, seconds);
+        if (impairment != null) {
+            System.out.println("Impairment: " + impairment);
         }
-
-        return false;
-    }
-
-    /**
-     * Get input from user for required program parameters
-     */
-    public static void initData() {
-        Scanner scanner = new Scanner(System.in);
-
-        System.out.print("Enter the window’s size on the sender: ");
-        windowSize = scanner.nextByte();
-
-        System.out.print("Enter the maximum sequence number on the sender: ");
-        sequenceNumberSize = scanner.nextByte();
-
-        System.out.print("Select the packet(s) that will be dropped: ");
-        packetsToDrop = scanner.nextByte();
-
-        timers = new long[windowSize];
-        initWindow(windowSize);
-    }
-
-    /**
-     * Initialize receive data packet
-     *
-     * @return DatagramPacket initialized packet
-     */
-    public static DatagramPacket initReceiveDataConstraints() {
-        byte[] receiveData = new byte[1024];
-
-        return new DatagramPacket(receiveData, receiveData.length);
-    }
-
-    /**
-     * Initialize send data packet
-     *
-     * @param currentSequence Current sequence number
-     * @param hostName Name of host to connect to
-     * @param portNumber Port number to connect to
-     * @throws java.net.UnknownHostException
-     * @return Initialized data packet
-     */
-    public static DatagramPacket initSendDataConstraints(byte currentSequence, String hostName, int portNumber) throws UnknownHostException {
-        byte[] sendData = {windowSize, packetsToDrop, currentSequence, sequenceNumberSize};
-        InetAddress IPAddress = InetAddress.getByName(hostName);
-
-        return new DatagramPacket(sendData, sendData.length, IPAddress, portNumber);
+        metrics.stopDump();
+        System.exit(0);
     }
 
     /**
-     * Initialize the window with the initial values
-     *
-     * @param windowSize Size of window
+     * @return Address of the receiver, from receiver.host and receiver.port
+     * @throws IOException If the host cannot be resolved
      */
-    public static void initWindow(int windowSize) {
-        window = new String[windowSize];
-        for (int i = 0; i < windowSize; i++) {
-            window[i] = String.valueOf(i);
-        }
+    public static SocketAddress getReceiverAddress() throws IOException {
+        return new InetSocketAddress(InetAddress.getByName(System.getProperty("receiver.host", "localhost")),
+                Integer.getInteger("receiver.port", 9876));
     }
 
     /**
-     * Determines if a packet needs to be resent
+     * Builds the pacer from the pacing, pacing.gain and pacing.burst
+     * properties. The default gain of 2 lets slow start double the window
+     * every round trip.
      *
-     * @return Whether the packet needs to be resent
+     * @return Pacer, or null if pacing is off
      */
-    public static byte needToResendPacket() {
-        long currentTime = System.currentTimeMillis();
-        for (byte i = 0; i < timers.length; i++) {
-            // Wait 200ms before we resend packets
-            if (currentTime - timers[i] > 200 && window[i].contains("*")) {
-                return i;
-            }
+    public static Pacer initPacer() {
+        if (System.getProperty("pacing", "on").equalsIgnoreCase("off")) {
+            return null;
         }
-
-        return -1;
+        return new Pacer(Double.parseDouble(System.getProperty("pacing.gain", "2")),
+                Integer.getInteger("pacing.burst", 4));
     }
 
     /**
-     * Formats the window to be readable by the console
+     * Prints the statistics of the transfer on one line, for scripts to pick
+     * up
      *
-     * @param window
-     * @return Formatted string
+     * @param bytes Bytes of file data delivered
+     * @param seconds Time from the SYN to the last ACK
      */
-    public static String printWindow(String[] window) {
-        String concat = "[";
-
-        for (int i = 0; i < window.length; i++) {
-            concat += window[i] + ",";
-        }
-
-        return concat.subSequence(0, concat.length() - 1) + "]";
+    public static void printSummary(long bytes, double seconds) {
+        long packetsSent = metrics.getPacketsSent(), packetsResent = metrics.getRetransmissions();
+        Histogram latency = metrics.getTimeInWindow().snapshot();
+        System.out.printf(Locale.ROOT, "Summary: packets=%d bytes=%d seconds=%.6f goodput_mbps=%.3f packets_per_second=%.1f "
+                + "sent=%d resent=%d retransmission_ratio=%.6f latency_p50_us=%.1f latency_p99_us=%.1f latency_max_us=%.1f%n",
+                sequenceNumberSize, bytes, seconds, bytes * 8 / seconds / 1e6, sequenceNumberSize / seconds,
+                packetsSent, packetsResent, packetsSent == 0 ? 0 : (double) packetsResent / packetsSent,
+                latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3);
     }
 
     /**
-     * Attempt to resend a packet that has timed out
-     *
-     * @param socket Socket to send the packet to
-     * @param window Current window
-     * @param resendIndex Window index of the packet to resend
-     * @throws IOException
+     * Get input from user for required program parameters
      */
-    public static void resendPacket(DatagramSocket socket, String[] window, int resendIndex) throws IOException {
-        byte sequenceNumber = Byte.valueOf(window[resendIndex].substring(0, window[resendIndex].indexOf("*")));
-        sendPkt = initSendDataConstraints(sequenceNumber, "localhost", 9876);
-        socket.send(sendPkt);
-        startTimerOnSentPacket(sequenceNumber % windowSize);
-        window = updateWindow(window, sequenceNumber, false);
-        System.out.println("Packet " + sequenceNumber + " has been resent, window " + printWindow(window));
-    }
+    public static void initData() {
+        Scanner scanner = new Scanner(System.in);
 
-    /**
-     * Send a packet
-     *
-     * @param socket Socket to send the packet to
-     * @param window Current window
-     * @throws IOException
-     */
-    public static void sendPacket(DatagramSocket socket, String[] window) throws IOException {
-        socket.send(sendPkt);
-        startTimerOnSentPacket(currentSequence % windowSize);
-        window = updateWindow(window, currentSequence, false);
-        System.out.println("Packet " + currentSequence + " is sent, window " + printWindow(window));
-        currentSequence++;
-    }
+        windowSize = (int) prompt(scanner, "window.size", "Enter the window’s size on the sender: ");
 
-    /**
-     * Shifts the window to the right by one
-     *
-     * @param window Window to shift
-     * @param sequenceNumber sequenceNumber to add
-     * @return Updated window
-     */
-    public static String[] shiftWindow(String[] window, int sequenceNumber) {
-        // Shift the window
-        for (int i = 0; i < window.length - 1; i++) {
-            window[i] = window[i + 1];
+        // A file decides how many packets there are by itself
+        if (source != null) {
+            sequenceNumberSize = source.getSegmentCount();
+        } else {
+            sequenceNumberSize = prompt(scanner, "packets", "Enter the maximum sequence number on the sender: ");
         }
-        // Determine if we've hit the limit, and add the final value in accordingly
-        window[window.length - 1] = (sequenceNumber >= sequenceNumberSize) ? "-" : String.valueOf(sequenceNumber);
-        return window;
-    }
 
-    /**
-     * Begins the timer on a sent packet
-     *
-     * @param indexToUpdate Timer index to restart
-     */
-    public static void startTimerOnSentPacket(int indexToUpdate) {
-        timers[indexToUpdate] = System.currentTimeMillis();
+        packetsToDrop = (int) prompt(scanner, "drops", "Select the packet(s) that will be dropped: ");
     }
 
     /**
-     * Updates the window with the new given information
+     * Reads a parameter from a system property, or asks the user for it if
+     * the property is not set
      *
-     * @param window Current window to update
-     * @param sequenceNumber Sequence number to update
-     * @param status Status to update the sequence number with. True indicates
-     * ACKed, false indicates sent, but not ACKed.
-     * @return Updated window
+     * @param scanner Scanner over the console
+     * @param property Name of the system property
+     * @param message Prompt to show the user
+     * @return Value of the parameter
      */
-    public static String[] updateWindow(String[] window, int sequenceNumber, boolean status) {
-        int indexToUpdate = -1;
-
-        // Find the incideces we need to update
-        for (int i = 0; i < window.length; i++) {
-            if (window[i] == null || window[i].equals(String.valueOf(sequenceNumber)) || window[i].subSequence(0, window[i].length() - 1).equals(String.valueOf(sequenceNumber))) {
-                indexToUpdate = i;
-                break;
-            }
-        }
-
-        if (!status) {
-            // Sent, not ACKed
-            window[indexToUpdate] = String.valueOf(sequenceNumber) + "*";
-        } else {
-            // ACKed
-            window[indexToUpdate] = String.valueOf(sequenceNumber) + "#";
-        }
-
-        // See if we're ready to shift the window.
-        int timesToShift = 0;
-        for (int i = 0; i < window.length; i++) {
-            if (window[i] != null && !window[i].contains("*")) {
-                timesToShift++;
-            } else {
-                break;
-            }
-        }
-
-        // Shift the window timesToShift times
-        for (int i = 0; i < timesToShift; i++) {
-            shiftWindow(window, currentSequence + i);
-        }
-
-        if (status) {
-            System.out.println("Ack " + sequenceNumber + " is receieved, window " + printWindow(window));
+    public static long prompt(Scanner scanner, String property, String message) {
+        String value = System.getProperty(property);
+        if (value != null) {
+            return Long.parseLong(value.trim());
         }
 
-        return window;
+        System.out.print(message);
+        return scanner.nextLong();
     }
 }
@@ -0,0 +1,998 @@
+package sender;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import protocol.Clock;
+import protocol.ArqStrategy;
+import protocol.CongestionControl;
+import protocol.Datagram;
+import protocol.DatagramPool;
+import protocol.EventLog;
+import protocol.ImpairmentEngine;
+import protocol.Pacer;
+import protocol.PacketCodec;
+import protocol.RenoCongestionControl;
+import protocol.RttEstimator;
+import protocol.SequenceNumber;
+import protocol.SlidingWindow;
+import protocol.SocketBuffers;
+import protocol.Stripes;
+import protocol.TimerWheel;
+import protocol.TransportMetrics;
+import protocol.VegasCongestionControl;
+import protocol.XorParity;
+
+/**
+ * One transfer to a receiver: the window, timers and congestion state of a
+ * single session, and the loop that drives it. A session is run by exactly
+ * one thread, but any number of sessions may run side by side, each on its
+ * own ephemeral port with its own random session ID.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class SenderSession {
+
+    // Resolution and size of the retransmission timer wheel
+    public static final long TICK_NANOS = 100000L;
+    static final int WHEEL_BUCKETS = 1024;
+
+    // A packet is presumed lost once this many later packets are ACKed,
+    // however far past it they were sent
+    static final int DUP_THRESH = 3;
+
+    // Session IDs only need to differ between the senders of one receiver
+    private static final Random ids = new Random();
+
+    final int sessionId, windowSize, packetsToDrop;
+    final long sequenceNumberSize;
+
+    // Stripe of the transfer this session carries, and the packets of the
+    // whole transfer, see Stripes
+    final int stripe, stripes;
+    final long transferPackets;
+    int currentSequence = 0;
+    final PacketCodec codec = new PacketCodec();
+    ByteBuffer sendPkt = ByteBuffer.allocateDirect(PacketCodec.MAX_SYN_SIZE), rcvPkt;
+    long[] timers, firstSent;
+    boolean[] retransmitted;
+    RttEstimator rtt = new RttEstimator();
+    CongestionControl congestion;
+    ArqStrategy arq = ArqStrategy.forName("sack");
+    int recoveryPoint;
+
+    // Round trip of the newest packet the ACK being applied is the first to
+    // ACK, or 0 if it ACKs no packet sent only once
+    long ackSample;
+
+    // Packets the receiver last said it has room for
+    int advertisedWindow = Integer.MAX_VALUE;
+
+    // Whether the window has been full since it was last open, so each
+    // stall is counted once however often the sender finds it still full
+    boolean stalled;
+
+    // Spreads new packets over the round trip, or null to send them as
+    // soon as the window allows
+    Pacer pacer;
+    TimerWheel wheel;
+    SlidingWindow window;
+    final SocketAddress receiverAddress;
+    final FileSource source;
+    ImpairmentEngine impairment;
+    DatagramPool impairmentPool;
+    final ByteBuffer[] datagram = new ByteBuffer[2];
+
+    // Data packets per parity packet, or 0 for none, and the parity packet
+    // being built
+    int fecGroup;
+    ByteBuffer parityHeader = ByteBuffer.allocateDirect(PacketCodec.MAX_HEADER_SIZE), parityPayload;
+    final TransportMetrics metrics;
+    final EventLog log;
+    Clock clock = Clock.SYSTEM;
+    long started, finished;
+
+    // Channel the timers resend on, while they are being advanced
+    DatagramChannel channel;
+
+    // Oldest packet to go back to once the timers are advanced, if any
+    int goBackFrom;
+    boolean goingBack;
+
+    // Resend exactly the packets whose deadline has passed
+    final TimerWheel.Expiry resend = new TimerWheel.Expiry() {
+        @Override
+        public void expired(int slot, long now) {
+            int sequenceNumber = window.sequenceOf(slot);
+            if (window.isAcked(sequenceNumber)) {
+                return;
+            }
+
+            // Only back off once per timeout, when the oldest packet expires
+            if (sequenceNumber == window.getBase()) {
+                rtt.backoff();
+                congestion.onTimeout(now);
+            }
+
+            // Resending the rest would reschedule timers the wheel is
+            // still walking, so that waits until it is done
+            if (arq.goesBackOnTimeout()) {
+                if (!goingBack || SequenceNumber.lessThan(sequenceNumber, goBackFrom)) {
+                    goBackFrom = sequenceNumber;
+                    goingBack = true;
+                }
+                return;
+            }
+
+            try {
+                resendPacket(channel, window, sequenceNumber);
+            } catch (IOException ex) {
+            }
+        }
+    };
+
+    /**
+     * @param receiverAddress Where the receiver is listening
+     * @param source File to send, or null to send only sequence numbers
+     * @param windowSize Size of the window
+     * @param packets Number of packets to send, if there is no file
+     * @param packetsToDrop Number of packets the receiver should drop
+     * @param algorithm Congestion control algorithm, see
+     * {@link #initCongestionControl(String)}
+     * @param metrics Metrics to count into, which may be shared with other
+     * sessions
+     * @param log Log of the thread that runs the session
+     */
+    public SenderSession(SocketAddress receiverAddress, FileSource source, int windowSize, long packets,
+            int packetsToDrop, String algorithm, TransportMetrics metrics, EventLog log) {
+        this(receiverAddress, source, windowSize, packets, packetsToDrop, algorithm, metrics, log, nextSessionId(), 0,
+                1);
+    }
+
+    /**
+     * Opens one stripe of a striped transfer, which carries every
+     * stripes-th packet of it from the stripe-th on
+     *
+     * @param receiverAddress Where the receiver is listening
+     * @param source File to send, or null to send only sequence numbers.
+     * Each stripe needs its own, as a source is not thread safe.
+     * @param windowSize Size of the stripe's window
+     * @param packets Number of packets in the whole transfer, if there is no
+     * file
+     * @param packetsToDrop Number of the stripe's packets the receiver
+     * should drop
+     * @param algorithm Congestion control algorithm, see
+     * {@link #initCongestionControl(String)}
+     * @param metrics Metrics to count into, which may be shared with other
+     * sessions
+     * @param log Log of the thread that runs the session
+     * @param sessionId Session ID of the stripe, the transfer's ID plus the
+     * stripe's index
+     * @param stripe Index of the stripe
+     * @param stripes Number of stripes in the transfer
+     */
+    public SenderSession(SocketAddress receiverAddress, FileSource source, int windowSize, long packets,
+            int packetsToDrop, String algorithm, TransportMetrics metrics, EventLog log, int sessionId, int stripe,
+            int stripes) {
+        this.sessionId = sessionId;
+        this.receiverAddress = receiverAddress;
+        this.source = source;
+        this.windowSize = windowSize;
+        this.stripe = stripe;
+        this.stripes = stripes;
+        // A file decides how many packets there are by itself
+        this.transferPackets = source != null ? source.getSegmentCount() : packets;
+        this.sequenceNumberSize = Stripes.count(transferPackets, stripe, stripes);
+        this.packetsToDrop = packetsToDrop;
+        this.metrics = metrics;
+        this.log = log;
+
+        rcvPkt = initReceiveDataConstraints();
+        initWindow(windowSize);
+        initCongestionControl(algorithm);
+        timers = new long[window.getCapacity()];
+        firstSent = new long[window.getCapacity()];
+        retransmitted = new boolean[window.getCapacity()];
+        wheel = new TimerWheel(window.getCapacity(), TICK_NANOS, WHEEL_BUCKETS, clock.nanoTime());
+    }
+
+    /**
+     * @return A fresh random session ID
+     */
+    public static int nextSessionId() {
+        synchronized (ids) {
+            return ids.nextInt();
+        }
+    }
+
+    /**
+     * Puts outgoing packets through an emulated network
+     *
+     * @param impairment Impairments to apply
+     * @param pool Pool the impairment engine takes its packets from, with
+     * buffers big enough for a header and a segment
+     */
+    public void setImpairment(ImpairmentEngine impairment, DatagramPool pool) {
+        this.impairment = impairment;
+        this.impairmentPool = pool;
+    }
+
+    /**
+     * Select the ARQ strategy. Must be set before the session runs, as the
+     * strategy travels in the SYN.
+     *
+     * @param name "gbn", "sr" or "sack", see {@link ArqStrategy#forName(String)}
+     */
+    public void initArq(String name) {
+        arq = ArqStrategy.forName(name);
+    }
+
+    /**
+     * Paces new packets rather than sending the window in bursts.
+     * Retransmissions are never held back.
+     *
+     * @param pacer Pacer to send through, or null for none
+     */
+    public void setPacer(Pacer pacer) {
+        this.pacer = pacer;
+    }
+
+    /**
+     * Runs the session on a different clock, such as the virtual clock of
+     * a simulation. Must be set before the session runs.
+     *
+     * @param clock Clock to time packets with
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        wheel = new TimerWheel(window.getCapacity(), TICK_NANOS, WHEEL_BUCKETS, clock.nanoTime());
+    }
+
+    /**
+     * Follows every group of data packets with a parity packet, so the
+     * receiver can rebuild a packet lost from the group without waiting for
+     * it to be resent (see XorParity). Must be set before the session runs,
+     * as the group size travels in the SYN.
+     *
+     * @param fecGroup Data packets per parity packet, or 0 for none
+     */
+    public void setFecGroup(int fecGroup) {
+        this.fecGroup = fecGroup;
+        if (fecGroup > 0 && source != null) {
+            parityPayload = ByteBuffer.allocateDirect(source.getSegmentSize());
+        }
+    }
+
+    /**
+     * Runs the transfer from the handshake to the last ACK
+     *
+     * @param timeout Longest the transfer may take, in nanoseconds
+     * @return Whether every packet was delivered in time
+     * @throws IOException
+     */
+    public boolean run(long timeout) throws IOException {
+        // One non-blocking channel carries both the packets and their ACKs,
+        // and this thread is the only one that ever touches the window. The
+        // receiver ACKs whatever port we send from, so any free port will do
+        // and several senders can share a host. Connecting the channel lets
+        // the kernel drop datagrams from anyone but the receiver.
+        final DatagramChannel channel = DatagramChannel.open();
+        Selector selector = null;
+        try {
+            channel.configureBlocking(false);
+            SocketBuffers.configure(channel);
+            channel.socket().bind(new InetSocketAddress(0));
+            channel.connect(receiverAddress);
+            selector = Selector.open();
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+
+            started = clock.nanoTime();
+            long deadline = started + timeout;
+            if (!handshake(channel, selector, deadline)) {
+                return false;
+            }
+            return transfer(channel, selector, key, deadline);
+        } finally {
+            finished = clock.nanoTime();
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Sends the window and handles ACKs until every packet is delivered
+     *
+     * @param channel Channel to send on, connected to the receiver
+     * @param selector Selector the channel is registered with
+     * @param key Channel's registration
+     * @param deadline Time to give up at
+     * @return Whether every packet was delivered in time
+     * @throws IOException
+     */
+    private boolean transfer(DatagramChannel channel, Selector selector, SelectionKey key, long deadline)
+            throws IOException {
+        while (!allPacketsDelivered(window)) {
+            if (clock.nanoTime() - deadline > 0) {
+                return false;
+            }
+
+            boolean blocked = sendWindow(channel);
+            releaseImpaired(channel);
+            key.interestOps(blocked ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+
+            // Selector timeouts are in milliseconds, so park for waits on the
+            // pacer that are shorter than that. Timers and held back packets
+            // can stand to be a little late, so their waits are rounded up
+            // to whole milliseconds, and an ACK still wakes us.
+            long now = clock.nanoTime();
+            long wait = Math.min(blocked ? Long.MAX_VALUE : getPacingDelay(), deadline - now);
+            long due = Math.min(wheel.timeUntilNext(now), impairment == null ? Long.MAX_VALUE
+                    : impairment.timeUntilNext(now));
+            if (due < wait) {
+                wait = Math.min(wait, (due + 999999L) / 1000000L * 1000000L);
+            }
+            if (wait < 1000000L) {
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                selector.selectNow();
+            } else {
+                selector.select(wait / 1000000);
+            }
+            selector.selectedKeys().clear();
+
+            // Drain every ACK that has arrived
+            while (true) {
+                rcvPkt.clear();
+                try {
+                    if (channel.receive(rcvPkt) == null) {
+                        break;
+                    }
+                } catch (PortUnreachableException ex) {
+                    // Receiver is not up (yet), the timers will resend
+                    break;
+                }
+                rcvPkt.flip();
+                receivePacket(channel, rcvPkt);
+            }
+
+            expireTimers(channel);
+            releaseImpaired(channel);
+        }
+
+        return true;
+    }
+
+    /**
+     * Sends as much of the window as the congestion window, the pacer and
+     * the socket allow
+     *
+     * @param channel Channel to send on, or null if every packet goes to
+     * the impairment engine
+     * @return Whether the socket ran out of room
+     * @throws IOException
+     */
+    public boolean sendWindow(DatagramChannel channel) throws IOException {
+        if (pacer != null) {
+            pacer.setRate(Math.min(windowSize, Math.min(congestion.getWindow(), advertisedWindow)), rtt.getSrtt());
+        }
+
+        while (canSendPacket(window)) {
+            stalled = false;
+            if (pacer != null && !pacer.tryAcquire(clock.nanoTime())) {
+                return false;
+            }
+            // Once the window is full nothing more goes out until an ACK
+            // comes back, so the receiver should not sit on it
+            currentSequence = window.getNext();
+            sendPkt = initSendDataConstraints(currentSequence,
+                    window.getInFlight() + 1 >= Math.min(congestion.getWindow(), advertisedWindow));
+            if (!sendPacket(channel, window)) {
+                return true;
+            }
+        }
+
+        countStall(window);
+        return false;
+    }
+
+    /**
+     * Handles a packet from the receiver. Anything but an ACK for this
+     * session is ignored, such as stray ACKs from other sessions.
+     *
+     * @param channel Channel to resend on, or null if every packet goes to
+     * the impairment engine
+     * @param packet Packet, positioned over its bytes
+     * @throws IOException
+     */
+    public void receivePacket(DatagramChannel channel, ByteBuffer packet) throws IOException {
+        if (codec.decode(packet) && codec.getType() == PacketCodec.ACK && codec.getSessionId() == sessionId) {
+            window = receiveAck(window, codec);
+            fastRetransmit(channel, window);
+        }
+    }
+
+    /**
+     * Resends the packets whose timers have run out
+     *
+     * @param channel Channel to resend on, or null if every packet goes to
+     * the impairment engine
+     * @throws IOException
+     */
+    public void expireTimers(DatagramChannel channel) throws IOException {
+        this.channel = channel;
+        wheel.advance(clock.nanoTime(), resend);
+        this.channel = null;
+
+        if (goingBack) {
+            goingBack = false;
+            int end = window.getNext();
+            for (int i = window.firstUnacked(goBackFrom, end); SequenceNumber.lessThan(i, end);
+                    i = window.firstUnacked(i + 1, end)) {
+                resendPacket(channel, window, i);
+            }
+        }
+    }
+
+    /**
+     * Opens the session by sending a SYN with the transfer's parameters
+     * until the receiver answers with a SYN-ACK. The SYN is resent on the
+     * retransmission timeout, and an answer to the first one seeds the
+     * round trip estimate.
+     *
+     * @param channel Channel to send the SYN on
+     * @param selector Selector the channel is registered with for reads
+     * @param deadline Time to give up at
+     * @return Whether the receiver answered in time
+     * @throws IOException If the receiver refuses the session
+     */
+    public boolean handshake(DatagramChannel channel, Selector selector, long deadline) throws IOException {
+        boolean retried = false;
+
+        while (clock.nanoTime() - deadline < 0) {
+            sendPkt = initSyn();
+            try {
+                channel.write(sendPkt);
+            } catch (PortUnreachableException ex) {
+            }
+            log.log(EventLog.SYN_SENT, sessionId, 0);
+
+            long sent = clock.nanoTime(), retry = sent + rtt.getRto(), now = sent;
+            while (retry - now > 0) {
+                selector.select(Math.max(1, (retry - now) / 1000000));
+                selector.selectedKeys().clear();
+
+                while (true) {
+                    rcvPkt.clear();
+                    try {
+                        if (channel.receive(rcvPkt) == null) {
+                            break;
+                        }
+                    } catch (PortUnreachableException ex) {
+                        break;
+                    }
+                    rcvPkt.flip();
+                    if (!codec.decode(rcvPkt) || codec.getSessionId() != sessionId) {
+                        continue;
+                    }
+                    if (codec.getType() == PacketCodec.REJECT) {
+                        throw new IOException("The receiver refused session " + sessionId + "; check window.size, "
+                                + "segment.size and fec.group against its limits (segment.max on the receiver)");
+                    }
+                    if (codec.getType() == PacketCodec.SYN_ACK) {
+                        if (!retried) {
+                            rtt.sample(clock.nanoTime() - sent);
+                        }
+                        log.log(EventLog.SYN_ACK_RECEIVED, sessionId, 0);
+                        return true;
+                    }
+                }
+                now = clock.nanoTime();
+            }
+
+            rtt.backoff();
+            retried = true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Encodes the SYN that opens the session, with the transfer's parameters
+     *
+     * @return SYN, ready to be sent
+     */
+    public ByteBuffer initSyn() {
+        return codec.encodeSyn(sendPkt, sessionId, windowSize, packetsToDrop, transferPackets,
+                source != null ? source.getSegmentSize() : 0, fecGroup, arq.getId(), stripe, stripes);
+    }
+
+    /**
+     * @return Nanoseconds until the pacer lets the next packet go, 0 if it
+     * would now, or Long.MAX_VALUE if no packet is waiting on it
+     */
+    public long getPacingDelay() {
+        if (pacer == null || !canSendPacket(window)) {
+            return Long.MAX_VALUE;
+        }
+        return pacer.timeUntilNext(clock.nanoTime());
+    }
+
+    /**
+     * @return Session ID carried in every packet
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return Window of the transfer
+     */
+    public SlidingWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * @return Number of packets in the transfer, or in the stripe
+     */
+    public long getPacketCount() {
+        return sequenceNumberSize;
+    }
+
+    /**
+     * @return Bytes of file data in the transfer, or in the stripe
+     */
+    public long getBytes() {
+        if (source == null) {
+            return 0;
+        }
+
+        // Only the stripe with the last segment carries a short one
+        long bytes = sequenceNumberSize * source.getSegmentSize();
+        if ((transferPackets - 1) % stripes == stripe) {
+            bytes -= transferPackets * source.getSegmentSize() - source.getSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param index Index of a packet within the session
+     * @return Index of its segment in the file
+     */
+    public long segmentIndex(long index) {
+        return Stripes.segmentOf(index, stripe, stripes);
+    }
+
+    /**
+     * @return Time from the first SYN to the end of the transfer, in
+     * nanoseconds
+     */
+    public long getElapsed() {
+        return finished - started;
+    }
+
+    /**
+     * Determines if all packets have been successfully delivered
+     *
+     * @param window Current window
+     * @return Whether all packets have been delivered
+     */
+    public boolean allPacketsDelivered(SlidingWindow window) {
+        return window.isComplete();
+    }
+
+    /**
+     * Checks if we are in a position to send a new packet. The window
+     * entered by the user caps how far ahead we may get, and the smaller of
+     * the congestion window and the receiver's advertised window caps how
+     * many packets may be unACKed at once. One packet may always be in
+     * flight, so the ACK for it tells us when a closed window opens again.
+     *
+     * @param window Current window
+     * @return Whether we are ready to send a new packet
+     */
+    public boolean canSendPacket(SlidingWindow window) {
+        int inFlight = window.getInFlight();
+        return window.canSend() && inFlight < congestion.getWindow() && (inFlight == 0 || inFlight < advertisedWindow);
+    }
+
+    /**
+     * Counts the sender having to wait for ACKs to open the window while
+     * there are still packets to send, once each time the window goes from
+     * open to full
+     *
+     * @param window Current window
+     */
+    public void countStall(SlidingWindow window) {
+        if (!stalled && window.indexOf(window.getNext()) < window.getLimit()) {
+            stalled = true;
+            metrics.onWindowStall();
+        }
+    }
+
+    /**
+     * Initialize receive data buffer. It is reused for every ACK.
+     *
+     * @return Initialized buffer
+     */
+    public static ByteBuffer initReceiveDataConstraints() {
+        return ByteBuffer.allocateDirect(PacketCodec.MAX_ACK_SIZE);
+    }
+
+    /**
+     * Initialize send data buffer. The header is encoded into the same
+     * buffer every time; the session parameters were sent in the SYN.
+     *
+     * @param currentSequence Current sequence number
+     * @return Initialized data buffer, ready to be sent
+     */
+    public ByteBuffer initSendDataConstraints(int currentSequence) {
+        return initSendDataConstraints(currentSequence, false);
+    }
+
+    /**
+     * Initialize send data buffer for a new packet
+     *
+     * @param currentSequence Current sequence number
+     * @param ackNow Whether the receiver should ACK the packet at once
+     * @return Initialized data buffer, ready to be sent
+     */
+    public ByteBuffer initSendDataConstraints(int currentSequence, boolean ackNow) {
+        return codec.encodeData(sendPkt, sessionId, Stripes.toWire(currentSequence, stripe, stripes), ackNow);
+    }
+
+    /**
+     * Initialize the window with the initial values
+     *
+     * @param windowSize Size of window
+     */
+    public void initWindow(int windowSize) {
+        window = new SlidingWindow(windowSize, sequenceNumberSize);
+    }
+
+    /**
+     * Select the congestion control algorithm
+     *
+     * @param algorithm "reno" for loss based AIMD with slow start, or "vegas"
+     * for delay based
+     */
+    public void initCongestionControl(String algorithm) {
+        if (algorithm.equalsIgnoreCase("vegas")) {
+            congestion = new VegasCongestionControl();
+        } else if (algorithm.equalsIgnoreCase("reno")) {
+            congestion = new RenoCongestionControl();
+        } else {
+            throw new IllegalArgumentException("Unknown congestion control algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Formats the window to be readable by the console
+     *
+     * @param window
+     * @return Formatted string
+     */
+    public static String printWindow(SlidingWindow window) {
+        return window.toString();
+    }
+
+    /**
+     * Resend a packet that has timed out or is presumed lost. If the socket
+     * has no room the packet is treated as lost and its timer simply restarts.
+     *
+     * @param channel Channel to send the packet on
+     * @param window Current window
+     * @param sequenceNumber Sequence number of the packet to resend
+     * @throws IOException
+     */
+    public void resendPacket(DatagramChannel channel, SlidingWindow window, int sequenceNumber) throws IOException {
+        sendPkt = initSendDataConstraints(sequenceNumber);
+        if (!transmit(channel, window, sequenceNumber)) {
+            metrics.onDrop();
+        }
+        startTimerOnSentPacket(window.slotOf(sequenceNumber), true);
+        metrics.onRetransmission();
+        window = updateWindow(window, sequenceNumber, false);
+        log.log(EventLog.PACKET_RESENT, sessionId, sequenceNumber, window.getBase(), window.getNext(), window.getInFlight());
+    }
+
+    /**
+     * Resends every packet with DUP_THRESH or more later packets ACKed,
+     * without waiting for its timer. Each packet is only fast
+     * retransmitted once; if the resend is lost too, its timer takes over.
+     * The congestion window is cut once per window of data, however many
+     * packets in it turn out to be lost.
+     *
+     * @param channel Channel to send packets on
+     * @param window Current window
+     * @throws IOException
+     */
+    public void fastRetransmit(DatagramChannel channel, SlidingWindow window) throws IOException {
+        // With parity on, give the receiver the rest of the group and its
+        // parity packet to rebuild the packet before resending it. Every
+        // hole before the end has at least that many packets ACKed after it.
+        int end = window.ackedFromEnd(Math.max(DUP_THRESH, fecGroup + 1));
+
+        for (int i = window.firstUnacked(window.getBase(), end); SequenceNumber.lessThan(i, end);
+                i = window.firstUnacked(i + 1, end)) {
+            if (retransmitted[window.slotOf(i)]) {
+                continue;
+            }
+
+            if (!SequenceNumber.lessThan(i, recoveryPoint)) {
+                congestion.onLoss(clock.nanoTime());
+                recoveryPoint = window.getNext();
+            }
+
+            resendPacket(channel, window, i);
+        }
+    }
+
+    /**
+     * Send a packet
+     *
+     * @param channel Channel to send the packet on
+     * @param window Current window
+     * @return Whether the socket had room for the packet
+     * @throws IOException
+     */
+    public boolean sendPacket(DatagramChannel channel, SlidingWindow window) throws IOException {
+        if (!transmit(channel, window, currentSequence)) {
+            return false;
+        }
+
+        startTimerOnSentPacket(window.slotOf(currentSequence), false);
+        metrics.onPacketSent();
+        window = updateWindow(window, currentSequence, false);
+        log.log(EventLog.PACKET_SENT, sessionId, currentSequence, window.getBase(), window.getNext(), window.getInFlight());
+
+        // Groups are counted from the start of the transfer, and the last
+        // one may be short
+        if (fecGroup > 0) {
+            long index = window.indexOf(currentSequence);
+            if ((index + 1) % fecGroup == 0 || index + 1 == sequenceNumberSize) {
+                sendParity(channel, currentSequence, index);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the parity packet of the group a packet closes. Parity is never
+     * resent; if it is lost the packets it covers are resent as usual.
+     *
+     * @param channel Channel to send the packet on
+     * @param lastSequence Sequence number of the last packet in the group
+     * @param lastIndex Index of that packet in the transfer
+     * @throws IOException
+     */
+    public void sendParity(DatagramChannel channel, int lastSequence, long lastIndex) throws IOException {
+        int groupSize = (int) (lastIndex % fecGroup) + 1, lastLength = 0;
+
+        if (source != null) {
+            int segmentSize = source.getSegmentSize();
+            parityPayload.clear();
+            XorParity.clear(parityPayload, 0, segmentSize);
+            for (long i = lastIndex - groupSize + 1; i <= lastIndex; i++) {
+                ByteBuffer segment = source.segment(segmentIndex(i));
+                lastLength = segment.remaining();
+                XorParity.xor(parityPayload, 0, segment);
+            }
+            // Only a group of one can be shorter than a full segment
+            parityPayload.limit(groupSize > 1 ? segmentSize : lastLength).position(0);
+        }
+        parityHeader = codec.encodeParity(parityHeader, sessionId, Stripes.toWire(lastSequence - groupSize + 1, stripe,
+                stripes), groupSize, lastLength);
+        metrics.onParitySent();
+
+        if (impairment != null) {
+            Datagram copy = impairmentPool.acquire();
+            copy.buffer.put(parityHeader);
+            if (source != null) {
+                copy.buffer.put(parityPayload);
+            }
+            copy.buffer.flip();
+            impairment.offer(copy, clock.nanoTime());
+            return;
+        }
+
+        try {
+            if (source == null) {
+                channel.write(parityHeader);
+                return;
+            }
+
+            datagram[0] = parityHeader;
+            datagram[1] = parityPayload;
+            channel.write(datagram);
+        } catch (PortUnreachableException ex) {
+            metrics.onDrop();
+        }
+    }
+
+    /**
+     * Writes the header in sendPkt, followed by the packet's segment of the
+     * file if there is one, as a single datagram. The segment is gathered
+     * straight from the mapped file, so it is never copied onto the heap.
+     *
+     * @param channel Channel to send the packet on
+     * @param window Current window
+     * @param sequenceNumber Sequence number of the packet
+     * @return Whether the socket had room for the packet
+     * @throws IOException
+     */
+    public boolean transmit(DatagramChannel channel, SlidingWindow window, int sequenceNumber) throws IOException {
+        // An emulated network gets its own copy, as it may hold the packet
+        // back past the next use of these buffers
+        if (impairment != null) {
+            Datagram copy = impairmentPool.acquire();
+            copy.buffer.put(sendPkt);
+            if (source != null) {
+                copy.buffer.put(source.segment(segmentIndex(window.indexOf(sequenceNumber))));
+            }
+            copy.buffer.flip();
+            impairment.offer(copy, clock.nanoTime());
+            return true;
+        }
+
+        try {
+            if (source == null) {
+                return channel.write(sendPkt) > 0;
+            }
+
+            datagram[0] = sendPkt;
+            datagram[1] = source.segment(segmentIndex(window.indexOf(sequenceNumber)));
+            return channel.write(datagram) > 0;
+        } catch (PortUnreachableException ex) {
+            // Nobody is listening yet, so the packet is as good as lost
+            metrics.onDrop();
+            return true;
+        }
+    }
+
+    /**
+     * Sends the packets the impairment engine has finished holding back. A
+     * packet the socket has no room for is lost.
+     *
+     * @param channel Channel to send packets on
+     * @throws IOException
+     */
+    public void releaseImpaired(DatagramChannel channel) throws IOException {
+        if (impairment == null) {
+            return;
+        }
+
+        Datagram datagram;
+        while ((datagram = impairment.poll(clock.nanoTime())) != null) {
+            try {
+                if (channel.write(datagram.buffer) == 0) {
+                    metrics.onDrop();
+                }
+            } catch (PortUnreachableException ex) {
+                metrics.onDrop();
+            }
+            impairmentPool.release(datagram);
+        }
+    }
+
+    /**
+     * Begins the timer on a sent packet
+     *
+     * @param indexToUpdate Timer index to restart
+     * @param retransmission Whether the packet has been sent before
+     */
+    public void startTimerOnSentPacket(int indexToUpdate, boolean retransmission) {
+        timers[indexToUpdate] = clock.nanoTime();
+        retransmitted[indexToUpdate] = retransmission;
+        if (!retransmission) {
+            firstSent[indexToUpdate] = timers[indexToUpdate];
+        }
+        wheel.schedule(indexToUpdate, timers[indexToUpdate] + rtt.getRto());
+    }
+
+    /**
+     * Updates the window with the new given information
+     *
+     * @param window Current window to update
+     * @param sequenceNumber Sequence number to update
+     * @param status Status to update the sequence number with. True indicates
+     * ACKed, false indicates sent, but not ACKed.
+     * @return Updated window
+     */
+    public SlidingWindow updateWindow(SlidingWindow window, int sequenceNumber, boolean status) {
+        if (!status) {
+            // Sent, not ACKed
+            window.markSent(sequenceNumber);
+        } else {
+            // Karn's rule: a retransmitted packet's ACK could belong to any
+            // copy, so only time packets that were sent once
+            int slot = window.slotOf(sequenceNumber);
+            if (window.contains(sequenceNumber) && !window.isAcked(sequenceNumber)) {
+                long now = clock.nanoTime();
+                wheel.cancel(slot);
+                if (!retransmitted[slot]) {
+                    ackSample = now - timers[slot];
+                    rtt.sample(ackSample);
+                    metrics.recordRtt(ackSample);
+                }
+                metrics.recordTimeInWindow(now - firstSent[slot]);
+            }
+
+            // ACKed, the window slides past any leading ACKed packets
+            window.markAcked(sequenceNumber);
+        }
+
+        return window;
+    }
+
+    /**
+     * Applies an ACK to the window. Everything before the cumulative ACK has
+     * been received, as has every selective ACK block after it, so whatever
+     * is left outstanding in between is exactly the holes.
+     *
+     * @param window Current window to update
+     * @param ack Codec holding the decoded ACK
+     * @return Updated window
+     */
+    public SlidingWindow receiveAck(SlidingWindow window, PacketCodec ack) {
+        int base = window.getBase(), blocks = ack.getSackBlocks(), inFlight = window.getInFlight();
+        int cumulativeAck = Stripes.fromWire(ack.getCumulativeAck(), base, stripe, stripes);
+        advertisedWindow = ack.getAdvertisedWindow();
+        ackSample = 0;
+
+        updateWindow(window, window.getBase(), cumulativeAck);
+        for (int i = 0; i < blocks; i++) {
+            int start = Stripes.fromWire(ack.getSackStart(i), base, stripe, stripes);
+            int end = Stripes.fromWire(ack.getSackEnd(i), base, stripe, stripes);
+            updateWindow(window, start, end);
+        }
+
+        int acked = inFlight - window.getInFlight();
+        metrics.onAck();
+        if (acked > 0) {
+            // The time the receiver held the ACK back is no part of the path,
+            // and a delay based algorithm would read it as queueing. The
+            // delay is measured from the last packet to arrive, which is as
+            // a rule the newest one ACKed.
+            long delay = ack.getAckDelay();
+            congestion.onAck(acked, ackSample > delay ? ackSample - delay : ackSample, clock.nanoTime(),
+                    inFlight >= congestion.getWindow());
+        } else {
+            metrics.onDuplicate();
+        }
+
+        log.log(EventLog.ACK_RECEIVED, sessionId, cumulativeAck, blocks, window.getBase(), window.getNext());
+        return window;
+    }
+
+    /**
+     * Marks a run of sequence numbers as ACKed
+     *
+     * @param window Current window to update
+     * @param start First sequence number in the run
+     * @param end Sequence number just past the run
+     * @return Updated window
+     */
+    public SlidingWindow updateWindow(SlidingWindow window, int start, int end) {
+        // Nothing past what we have sent can have been ACKed
+        if (SequenceNumber.lessThan(window.getNext(), end)) {
+            end = window.getNext();
+        }
+
+        for (int i = SequenceNumber.max(start, window.getBase()); SequenceNumber.lessThan(i, end); i++) {
+            updateWindow(window, i, true);
+        }
+
+        return window;
+    }
+}
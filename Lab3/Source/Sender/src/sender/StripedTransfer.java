@@ -0,0 +1,130 @@
+package sender;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import protocol.DatagramPool;
+import protocol.EventLog;
+import protocol.ImpairmentEngine;
+import protocol.PacketCodec;
+
+/**
+ * Sends one transfer as several stripes at once, each a session with its own
+ * socket, thread, window and congestion state, so the transfer is not held
+ * to what one thread and one socket can push. The stripes deal the file's
+ * segments out between them (see protocol.Stripes) and the receiver puts
+ * them back together into one file.
+ *
+ * Settings are system properties, besides those of the Sender:
+ *
+ * <pre>
+ * stripes           number of stripes (2)
+ * receiver.sockets  consecutive ports the receiver listens on from
+ *                   receiver.port; stripe s sends to the (s mod n)th (1)
+ * </pre>
+ *
+ * The window size applies to every stripe, and the packets to drop all come
+ * from the first.
+ *
+ * @date 10/17/2026
+ * @author Andrew Jenkins, Nathan Robertus
+ */
+public class StripedTransfer {
+
+    /**
+     * @param args the command line arguments. If a file is given it is sent
+     * to the receiver, otherwise only sequence numbers are sent.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        InetSocketAddress receiverAddress = (InetSocketAddress) Sender.getReceiverAddress();
+        int sockets = Math.max(1, Integer.getInteger("receiver.sockets", 1));
+        if (args.length > 0) {
+            Sender.source = new FileSource(new File(args[0]), Sender.SEGMENT_SIZE);
+        }
+        Sender.initData();
+
+        // A stripe with nothing to carry would never finish its handshake
+        int stripes = (int) Math.max(1, Math.min(Integer.getInteger("stripes", 2), Sender.sequenceNumberSize));
+        int transferId = SenderSession.nextSessionId();
+        final SenderSession[] sessions = new SenderSession[stripes];
+        FileSource[] sources = new FileSource[stripes];
+        ImpairmentEngine[] impairments = new ImpairmentEngine[stripes];
+        long seed = Long.getLong("impair.seed", System.nanoTime());
+
+        for (int s = 0; s < stripes; s++) {
+            // A source is not thread safe, so every stripe maps the file
+            // for itself
+            if (Sender.source != null) {
+                sources[s] = s == 0 ? Sender.source : new FileSource(new File(args[0]), Sender.SEGMENT_SIZE);
+            }
+            InetSocketAddress address = new InetSocketAddress(receiverAddress.getAddress(),
+                    receiverAddress.getPort() + s % sockets);
+            sessions[s] = new SenderSession(address, sources[s], Sender.windowSize, Sender.sequenceNumberSize,
+                    s == 0 ? Sender.packetsToDrop : 0, System.getProperty("congestion", "reno"), Sender.metrics,
+                    new EventLog(Integer.getInteger("log.capacity", 65536)), transferId + s, s, stripes);
+            if (System.getProperty("impair") != null) {
+                DatagramPool pool = new DatagramPool(PacketCodec.MAX_HEADER_SIZE + Sender.SEGMENT_SIZE, 1024);
+                impairments[s] = new ImpairmentEngine(System.getProperty("impair"), seed + s, pool);
+                sessions[s].setImpairment(impairments[s], pool);
+            }
+            sessions[s].setFecGroup(Integer.getInteger("fec.group", 0));
+            sessions[s].initArq(System.getProperty("arq", "sack"));
+            sessions[s].setPacer(Sender.initPacer());
+        }
+        Sender.metrics.export("sender");
+
+        System.out.println("Sending " + Sender.sequenceNumberSize + " packets in " + stripes + " stripes");
+        final boolean[] delivered = new boolean[stripes];
+        Thread[] threads = new Thread[stripes];
+        long start = System.nanoTime();
+        for (int s = 0; s < stripes; s++) {
+            final int stripe = s;
+            threads[s] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        delivered[stripe] = sessions[stripe].run(Long.MAX_VALUE);
+                    } catch (IOException ex) {
+                        System.out.println("Stripe " + stripe + " failed: " + ex);
+                    }
+                }
+            }, "stripe-" + s);
+            threads[s].start();
+        }
+
+        boolean allDelivered = true;
+        for (int s = 0; s < stripes; s++) {
+            try {
+                threads[s].join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            allDelivered &= delivered[s];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        EventLog.flush();
+        System.out.println(allDelivered ? "All packets have been successfully delivered." : "The transfer failed.");
+        long bytes = 0;
+        for (int s = 0; s < stripes; s++) {
+            bytes += sessions[s].getBytes();
+            System.out.printf(Locale.ROOT, "Stripe %d: packets=%d bytes=%d seconds=%.6f%n", s,
+                    sessions[s].getPacketCount(), sessions[s].getBytes(), sessions[s].getElapsed() / 1e9);
+            if (sources[s] != null) {
+                sources[s].close();
+            }
+            if (impairments[s] != null) {
+                System.out.println("Impairment " + s + ": " + impairments[s]);
+            }
+        }
+        if (Sender.source != null) {
+            System.out.printf("Sent %d bytes in %.3f s (%.2f Mbit/s)%n", bytes, seconds, bytes * 8 / seconds / 1e6);
+        }
+        Sender.printSummary(bytes, seconds);
+        Sender.metrics.stopDump();
+        System.exit(allDelivered ? 0 : 1);
+    }
+}
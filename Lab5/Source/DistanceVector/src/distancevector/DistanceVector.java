@@ -22,8 +22,14 @@ public class DistanceVector {
     private static int routerID = -1;
     private static int[] routerPorts, distanceVector;
     private static DatagramSocket sendSocket, rcvSocket;
-    private static DatagramPacket sendPkt, rcvPkt = initReceiveDataConstraints();
+    private static DatagramPacket rcvPkt = initReceiveDataConstraints();
     private static byte[] rcvData = new byte[1024];
+    // Everything a send or receive needs is built once up front, so the
+    // update loop allocates nothing
+    private static InetAddress localhost;
+    private static DatagramPacket[] sendPkts;
+    private static ByteBuffer sendBuffer, rcvBuffer = ByteBuffer.wrap(rcvPkt.getData());
+    private static int[] incomingDistanceVector;
     private static boolean updated = true;
     
     public static void main(String[] args) throws IOException {
@@ -59,7 +65,7 @@ public class DistanceVector {
      * @param incomingPortNumber port number of the router that sent the packet
      */
     public static void updateDistanceVector(int incomingPortNumber) {
-        int[] incomingDistanceVector = covertByteArrayToIntArray(rcvData);
+        covertByteArrayToIntArray(rcvBuffer, incomingDistanceVector);
         int incomingRouterNumber = -1,thirdRouterNumber = -1;
         
         // Determine the incoming router's router number
@@ -69,11 +75,8 @@ public class DistanceVector {
         }
         
         // Determine the third router number
-        int[] routerPortsClone = routerPorts.clone();
-        routerPortsClone[routerID] = -1;
-        routerPortsClone[incomingRouterNumber] = -1;
-        for(int i = 0; i < routerPortsClone.length; i++) {
-            if(routerPortsClone[i] != -1) {
+        for(int i = 0; i < routerPorts.length; i++) {
+            if(i != routerID && i != incomingRouterNumber) {
                 thirdRouterNumber = i;
                 break;
             }
@@ -115,24 +118,38 @@ public class DistanceVector {
      * @throws IOException 
      */
     public static void updateRouters() throws UnknownHostException, IOException {
+        // Every neighbor's packet shares the one send buffer
+        convertIntArrayToByteArray(distanceVector, sendBuffer);
+        
         for(int i = 0; i < routerPorts.length; i++) {
             // Skip ourselves
             if(i == routerID) {
                 continue;
             }
             
-            sendPkt = initSendDataConstraints(routerPorts[i] + 3);
-            sendSocket.send(sendPkt);
+            sendSocket.send(sendPkts[i]);
         }
     }
     
     /**
-     * Initialize receiver and sender sockets
+     * Initialize receiver and sender sockets, and the packets sent
+     * to each neighbor
      * @throws java.net.SocketException
+     * @throws java.net.UnknownHostException
      */
-    public static void initializeSockets() throws SocketException {
+    public static void initializeSockets() throws SocketException, UnknownHostException {
         sendSocket = new DatagramSocket(routerPorts[routerID]);
         rcvSocket = new DatagramSocket(routerPorts[routerID] + routerPorts.length);
+        
+        localhost = InetAddress.getByName("localhost");
+        sendBuffer = ByteBuffer.allocate(distanceVector.length * 4);
+        incomingDistanceVector = new int[distanceVector.length];
+        sendPkts = new DatagramPacket[routerPorts.length];
+        for(int i = 0; i < routerPorts.length; i++) {
+            if(i != routerID) {
+                sendPkts[i] = initSendDataConstraints(routerPorts[i] + 3);
+            }
+        }
     }
     
     /**
@@ -215,17 +232,16 @@ public class DistanceVector {
     }
 
     /**
-     * Initialize send data packet
+     * Initialize send data packet. The packet is backed by the shared
+     * send buffer, so it always carries the latest encoded vector.
      *
      * @param portNumber Port number to connect to
      * @throws java.net.UnknownHostException
      * @return Initialized data packet
      */
     public static DatagramPacket initSendDataConstraints(int portNumber) throws UnknownHostException {
-        InetAddress IPAddress = InetAddress.getByName("localhost");
-        
-        byte[] data = convertIntArrayToByteArray(distanceVector);
-        return new DatagramPacket(data, data.length, IPAddress, portNumber);
+        byte[] data = sendBuffer.array();
+        return new DatagramPacket(data, data.length, localhost, portNumber);
     }
     
     /**
@@ -241,6 +257,18 @@ public class DistanceVector {
         return byteBuffer.array();
     }
     
+    /**
+     * Converts an integer array into an existing buffer, for sending
+     * over the network without allocating
+     * @param inData
+     * @param outData Buffer with room for every integer
+     */
+    public static void convertIntArrayToByteArray(int[] inData, ByteBuffer outData) {
+        for(int i = 0; i < inData.length; i++) {
+            outData.putInt(i * 4, inData[i]);
+        }
+    }
+    
     /**
      * Converts a byte array to an integer array, for receving from the network
      * @param inData
@@ -253,4 +281,16 @@ public class DistanceVector {
          
          return outData;
     }
+    
+    /**
+     * Converts a buffer into an existing integer array, for receiving
+     * from the network without allocating
+     * @param inData Big endian buffer
+     * @param outData Array to fill
+     */
+    public static void covertByteArrayToIntArray(ByteBuffer inData, int[] outData) {
+        for(int i = 0; i < outData.length; i++) {
+            outData[i] = inData.getInt(i * 4);
+        }
+    }
 }